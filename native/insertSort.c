@@ -0,0 +1,32 @@
+/*
+ * Native insertion sort behind CInsertionSort.java.
+ *
+ * Sorts the int[] in place and returns the number of memory accesses
+ * made, for the fault model.  Insertion sort is O(n^2); NativeSort
+ * should be used for all but small inputs.
+ *
+ * Author: Tanner Rutgers (trutgers)
+ */
+#include <jni.h>
+
+JNIEXPORT jlong JNICALL Java_CInsertionSort_insertSort(JNIEnv *env, jobject obj, jintArray values) {
+    jsize n = (*env)->GetArrayLength(env, values);
+    jint *a = (*env)->GetIntArrayElements(env, values, NULL);
+    jlong hits = 0;                     /* About 3n^2/4, past the range of jint */
+    if (a == NULL) return 0;            /* OutOfMemoryError is pending */
+
+    for (jsize i = 1; i < n; i++) {
+        jint value = a[i];
+        jsize j = i - 1;
+        while (j >= 0 && a[j] > value) {
+            a[j + 1] = a[j];
+            j--;
+            hits += 3;
+        }
+        a[j + 1] = value;
+        hits += 4;
+    }
+
+    (*env)->ReleaseIntArrayElements(env, values, a, 0);
+    return hits;
+}
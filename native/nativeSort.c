@@ -0,0 +1,181 @@
+/*
+ * Native sort behind NativeSort.java.
+ *
+ * Sorts ints in place with an introsort: median-of-three quicksort
+ * with a heap sort fallback once the recursion depth passes
+ * 2*log2(n), and insertion sort for ranges of INSERTION_CUTOFF
+ * values or fewer.  Java int[]s of up to CRITICAL_LIMIT values are
+ * pinned with GetPrimitiveArrayCritical, which holds off garbage
+ * collection in every thread of the JVM while it is held, so larger
+ * arrays are copied into native memory, sorted there and copied back.
+ * Direct buffers, such as the segments of an OffHeapStore, are sorted
+ * at their address and never copied.
+ *
+ * Every routine counts its memory accesses and the total is returned
+ * to Java for the fault model.  A cancel flag in a direct buffer is
+ * polled once per partition and per heap sort step; a cancelled sort
+ * stops early and returns -1.
+ *
+ * Author: Tanner Rutgers (trutgers)
+ */
+#include <jni.h>
+#include <stdlib.h>
+
+#define INSERTION_CUTOFF 16
+#define CRITICAL_LIMIT (1 << 16)        /* Largest int[] sorted while pinned */
+
+typedef struct {
+    jlong hits;                         /* Memory accesses made */
+    volatile jint *cancel;              /* Cancel flag, NULL if none */
+} sort_state;
+
+static int cancelled(sort_state *s) {
+    return s->cancel != NULL && *s->cancel != 0;
+}
+
+static void insertion_sort(jint *a, jlong lo, jlong hi, sort_state *s) {
+    jlong hits = 0;
+    for (jlong i = lo + 1; i < hi; i++) {
+        jint value = a[i];
+        jlong j = i - 1;
+        while (j >= lo && a[j] > value) {
+            a[j + 1] = a[j];
+            j--;
+            hits += 3;
+        }
+        a[j + 1] = value;
+        hits += 4;
+    }
+    s->hits += hits;
+}
+
+/* Sifts a[lo + root] down the max heap of n values starting at a[lo] */
+static void sift_down(jint *a, jlong lo, jlong root, jlong n, sort_state *s) {
+    jint *h = a + lo;
+    jint value = h[root];
+    jlong hits = 1;
+    for (;;) {
+        jlong child = 2 * root + 1;
+        if (child >= n) break;
+        if (child + 1 < n && h[child + 1] > h[child]) child++;
+        hits += 2;
+        if (h[child] <= value) break;
+        h[root] = h[child];
+        root = child;
+        hits += 2;
+    }
+    h[root] = value;
+    s->hits += hits + 1;
+}
+
+static int heap_sort(jint *a, jlong lo, jlong hi, sort_state *s) {
+    jlong n = hi - lo;
+    for (jlong i = n / 2 - 1; i >= 0; i--) {
+        sift_down(a, lo, i, n, s);
+    }
+    for (jlong end = n - 1; end > 0; end--) {
+        if (cancelled(s)) return -1;
+        jint temp = a[lo];
+        a[lo] = a[lo + end];
+        a[lo + end] = temp;
+        s->hits += 4;
+        sift_down(a, lo, 0, end, s);
+    }
+    return 0;
+}
+
+static void swap(jint *a, jlong i, jlong j) {
+    jint temp = a[i];
+    a[i] = a[j];
+    a[j] = temp;
+}
+
+/* Sorts a[lo, hi), recursing into the smaller partition only */
+static int introsort(jint *a, jlong lo, jlong hi, int depth, sort_state *s) {
+    while (hi - lo > INSERTION_CUTOFF) {
+        if (cancelled(s)) return -1;
+        if (depth-- == 0) return heap_sort(a, lo, hi, s);
+
+        /* Order a[lo], a[mid], a[hi-1] and partition around the median */
+        jlong mid = lo + (hi - lo - 1) / 2;
+        if (a[mid] < a[lo]) swap(a, mid, lo);
+        if (a[hi - 1] < a[mid]) {
+            swap(a, hi - 1, mid);
+            if (a[mid] < a[lo]) swap(a, mid, lo);
+        }
+        jint pivot = a[mid];
+        jlong hits = 16;
+
+        /* Hoare partition: a[lo, j] <= pivot <= a[j+1, hi) */
+        jlong i = lo - 1, j = hi;
+        for (;;) {
+            do { i++; hits++; } while (a[i] < pivot);
+            do { j--; hits++; } while (a[j] > pivot);
+            if (i >= j) break;
+            swap(a, i, j);
+            hits += 4;
+        }
+        s->hits += hits;
+
+        if (j + 1 - lo < hi - j - 1) {
+            if (introsort(a, lo, j + 1, depth, s) < 0) return -1;
+            lo = j + 1;
+        } else {
+            if (introsort(a, j + 1, hi, depth, s) < 0) return -1;
+            hi = j + 1;
+        }
+    }
+    insertion_sort(a, lo, hi, s);
+    return 0;
+}
+
+static jlong sort(jint *a, jlong n, volatile jint *cancel) {
+    sort_state s = { 0, cancel };
+    int depth = 0;
+    for (jlong m = n; m > 1; m >>= 1) depth += 2;
+    if (introsort(a, 0, n, depth, &s) < 0) return -1;
+    return s.hits;
+}
+
+static volatile jint *cancel_flag(JNIEnv *env, jobject cancel) {
+    return cancel != NULL ? (volatile jint *)(*env)->GetDirectBufferAddress(env, cancel) : NULL;
+}
+
+JNIEXPORT jlong JNICALL Java_NativeSort_sortInts(JNIEnv *env, jclass cls, jintArray values, jobject cancel) {
+    volatile jint *flag = cancel_flag(env, cancel);
+    jsize n = (*env)->GetArrayLength(env, values);
+    if (n <= CRITICAL_LIMIT) {
+        /* Short enough to pin without stalling the collector noticeably */
+        jint *a = (*env)->GetPrimitiveArrayCritical(env, values, NULL);
+        if (a == NULL) return -1;       /* OutOfMemoryError is pending */
+        jlong hits = sort(a, n, flag);
+        (*env)->ReleasePrimitiveArrayCritical(env, values, a, 0);
+        return hits;
+    }
+
+    jint *a = malloc((size_t)n * sizeof(jint));
+    if (a == NULL) {
+        jclass oom = (*env)->FindClass(env, "java/lang/OutOfMemoryError");
+        if (oom != NULL) (*env)->ThrowNew(env, oom, "Could not allocate native sort buffer");
+        return -1;
+    }
+    (*env)->GetIntArrayRegion(env, values, 0, n, a);
+    jlong hits = sort(a, n, flag);
+    if (hits >= 0) {
+        (*env)->SetIntArrayRegion(env, values, 0, n, a);
+        hits += 4 * (jlong)n;           /* Copy in and out */
+    }
+    free(a);
+    return hits;
+}
+
+JNIEXPORT jlong JNICALL Java_NativeSort_sortDirect(JNIEnv *env, jclass cls, jobject values, jlong count,
+                                                   jobject cancel) {
+    jint *a = (jint *)(*env)->GetDirectBufferAddress(env, values);
+    if (a == NULL) {
+        jclass iae = (*env)->FindClass(env, "java/lang/IllegalArgumentException");
+        if (iae != NULL) (*env)->ThrowNew(env, iae, "Buffer is not direct");
+        return -1;
+    }
+    return sort(a, count, cancel_flag(env, cancel));
+}
@@ -0,0 +1,199 @@
+/**
+ * Subclass of IntSorter that sorts primitive values with a natural
+ * merge sort, which adapts to order already present in its input.
+ * The input is scanned for ascending runs, descending runs are
+ * reversed, runs shorter than <code>MIN_RUN</code> are extended by
+ * insertion sort, and adjacent runs are then merged pairwise.  A merge
+ * skips the prefix of the left run and the suffix of the right run
+ * that are already in place, and is skipped entirely when the runs
+ * are already in order, so presorted input is sorted in near-linear
+ * time.
+ *
+ * The sorter can be given a hint, such as the result of a sorter that
+ * failed or timed out, which is usually much closer to sorted than the
+ * input.  The hint is not trusted: it is used in place of the input
+ * only if it holds the same multiset of values, checked by count and
+ * <code>SortedCheck.multisetHash</code>, and is otherwise ignored.
+ * The result is still adjudicated against the original values.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class AdaptiveMergeSort extends IntSorter {
+
+    private static final int MIN_RUN = 32;                      // Shortest run, shorter ones are extended
+    private static final int CHECK_MASK = (1 << 12) - 1;        // Cancel checked every 4096 values scanned
+
+    private int[] hint;
+    private boolean hintUsed;
+
+    /**
+     * Sets values, such as an earlier attempt's result, to start from
+     * instead of the given values if they hold the same multiset
+     * @param hint Values to try, copied, or null for none
+     */
+    public void setHint(int[] hint) { this.hint = (hint != null) ? hint.clone() : null; }
+
+    /**
+     * Returns true if the last sort started from the hint
+     */
+    public boolean isHintUsed() { return hintUsed; }
+
+    /**
+     * Sort primitive values using a natural merge sort.
+     * Details about arguments can be found in <code>IntSorter</code>
+     */
+    @Override
+    protected void sort(int[]... values) {
+        if (values.length == 1) sortedInts = values[0];                                     memHits+=3;
+        if (sortedInts == null) return;                                                     memHits++;
+
+        // Start from the hint if it is a permutation of the values
+        hintUsed = hint != null && hint.length == sortedInts.length
+                && SortedCheck.multisetHash(hint) == SortedCheck.multisetHash(sortedInts);
+        memHits += (hint != null) ? 2L*sortedInts.length : 0;
+        if (hintUsed) sortedInts = hint;
+        hint = null;
+
+        int[] a = sortedInts;
+        int n = a.length;
+
+        // Find the runs, recording where each starts
+        int[] starts = new int[n / MIN_RUN + 2];
+        int runs = 0;
+        long hits = 0;
+        for (int lo = 0; lo < n; ) {
+            if ((runs & (CHECK_MASK / MIN_RUN)) == 0) checkCancelled();
+            int hi = lo + 1;
+            if (hi < n) {
+                if (a[hi] < a[lo]) {
+                    while (hi + 1 < n && a[hi + 1] < a[hi]) hi++;
+                    hi++;
+                    hits += 4L*(hi - lo);                                                   // read pairs, reverse
+                    reverse(a, lo, hi);
+                } else {
+                    while (hi + 1 < n && a[hi + 1] >= a[hi]) hi++;
+                    hi++;
+                    hits += 2L*(hi - lo);
+                }
+            }
+            if (hi - lo < MIN_RUN && hi < n) {
+                int end = Math.min(n, lo + MIN_RUN);
+                hits += insertionSort(a, lo, hi, end);
+                hi = end;
+            }
+            starts[runs++] = lo;
+            lo = hi;
+        }
+        starts[runs] = n;
+        memHits += hits;
+
+        // Merge adjacent runs pairwise until one remains
+        int[] scratch = new int[(n + 1) / 2];
+        hits = 0;
+        for (int width = 1; width < runs; width *= 2) {
+            for (int r = 0; r + width < runs; r += 2*width) {
+                checkCancelled();
+                hits += merge(a, scratch, starts[r], starts[r + width], starts[Math.min(runs, r + 2*width)]);
+            }
+        }
+        memHits += hits;
+
+        // Sort complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    /**
+     * Reverses <code>a[lo, hi)</code>
+     */
+    private static void reverse(int[] a, int lo, int hi) {
+        for (int i = lo, j = hi - 1; i < j; i++, j--) {
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+
+    /**
+     * Extends the sorted run <code>a[lo, sorted)</code> to
+     * <code>a[lo, end)</code> by insertion
+     * @return number of array accesses made
+     */
+    private static long insertionSort(int[] a, int lo, int sorted, int end) {
+        long hits = 0;
+        for (int i = sorted; i < end; i++) {
+            int value = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > value) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = value;
+            hits += 3L*(i - j) + 1;
+        }
+        return hits;
+    }
+
+    /**
+     * Merges the sorted runs <code>a[lo, mid)</code> and
+     * <code>a[mid, hi)</code>, copying only the shorter of the parts
+     * that are out of place into <code>scratch</code>
+     * @return number of array accesses made
+     */
+    private static long merge(int[] a, int[] scratch, int lo, int mid, int hi) {
+        if (a[mid - 1] <= a[mid]) return 2;
+
+        // Left values not above the right's first, and right values not below the left's last, are in place
+        int first = upperBound(a, lo, mid, a[mid]);
+        int last = lowerBound(a, mid, hi, a[mid - 1]);
+        long hits = 4 + 2*(log2(mid - lo) + log2(hi - mid));
+        int left = mid - first, right = last - mid;
+
+        if (left <= right) {
+            System.arraycopy(a, first, scratch, 0, left);
+            int i = 0, j = mid, k = first;
+            while (i < left && j < last) {
+                a[k++] = (scratch[i] <= a[j]) ? scratch[i++] : a[j++];
+            }
+            System.arraycopy(scratch, i, a, k, left - i);
+        } else {
+            System.arraycopy(a, mid, scratch, 0, right);
+            int i = mid - 1, j = right - 1, k = last - 1;
+            while (i >= first && j >= 0) {
+                a[k--] = (a[i] > scratch[j]) ? a[i--] : scratch[j--];
+            }
+            System.arraycopy(scratch, 0, a, first, j + 1);
+        }
+        return hits + 5L*(left + right);                                                    // copy out, compare, write back
+    }
+
+    /**
+     * Returns the first index of <code>a[lo, hi)</code> holding a value
+     * greater than <code>key</code>
+     */
+    private static int upperBound(int[] a, int lo, int hi, int key) {
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (a[m] <= key) lo = m + 1;
+            else hi = m;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the first index of <code>a[lo, hi)</code> holding a value
+     * not less than <code>key</code>
+     */
+    private static int lowerBound(int[] a, int lo, int hi, int key) {
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (a[m] < key) lo = m + 1;
+            else hi = m;
+        }
+        return lo;
+    }
+
+    private static int log2(int n) {
+        return 32 - Integer.numberOfLeadingZeros(n);
+    }
+}
@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes integers in a compact binary format.
+ * A file starts with a fixed size header holding a magic number,
+ * the element count, the value range, a multiset hash of the values
+ * (see <code>SortedCheck.multisetHash</code>) and a CRC of the header
+ * itself.  The header is followed either by raw little-endian ints,
+ * or, for sorted output, by zigzag varint encoded deltas between
+ * consecutive values.
+ *
+ * All I/O goes through a <code>FileChannel</code> using large
+ * direct <code>ByteBuffer</code>s.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class BinaryIntFile {
+
+    public static final int MAGIC = 0x42535446;             // "FTSB" in little-endian
+    public static final short VERSION = 1;
+    public static final short FLAG_DELTA_VARINT = 1;        // Payload is delta + varint encoded
+    public static final int HEADER_BYTES = 40;
+
+    private static final int BUFFER_BYTES = 1 << 22;
+
+    /**
+     * Contents of a binary file header
+     */
+    public static class Header {
+        public short flags;
+        public long count;          // Number of values in the file
+        public int min;             // Smallest value, 0 if empty
+        public int max;             // Largest value, 0 if empty
+        public long hash;           // SortedCheck.multisetHash of the values
+
+        public boolean isDeltaEncoded() { return (flags & FLAG_DELTA_VARINT) != 0; }
+
+        @Override
+        public String toString() {
+            return "Header { count: " + count + ", range: [" + min + ", " + max
+                    + "], hash: " + Long.toHexString(hash) + ", flags: " + flags + " }";
+        }
+    }
+
+    /**
+     * Determines whether the file with the given filename starts
+     * with the binary format's magic number
+     * @param filename Name of file to check
+     * @return true if the file is in the binary format, false otherwise
+     * @throws IOException if cannot read from file
+     */
+    public static boolean isBinary(String filename) throws IOException {
+        RandomAccessFile file = null;
+
+        try {
+            file = new RandomAccessFile(filename, "r");
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            if (file.getChannel().read(magic, 0) < 4) return false;
+            return magic.getInt(0) == MAGIC;
+        } finally {
+            try { file.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    /**
+     * Reads and validates the header of a binary file without
+     * reading any of its values
+     * @param filename Name of file to read
+     * @return the file's header
+     * @throws IOException if cannot read from file or header is invalid
+     */
+    public static Header readHeader(String filename) throws IOException {
+        RandomAccessFile file = null;
+
+        try {
+            file = new RandomAccessFile(filename, "r");
+            return readHeader(file.getChannel());
+        } finally {
+            try { file.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    /**
+     * Reads all values of a binary file into a primitive array
+     * @param filename Name of file to read
+     * @return int[] of all values in the file
+     * @throws IOException if cannot read from file or file is invalid
+     */
+    public static int[] read(String filename) throws IOException {
+        RandomAccessFile file = null;
+
+        try {
+            file = new RandomAccessFile(filename, "r");
+            FileChannel channel = file.getChannel();
+            Header header = readHeader(channel);
+            if (header.count > Integer.MAX_VALUE) {
+                throw new IOException("Too many values in " + filename + ": " + header.count);
+            }
+
+            int[] values = new int[(int)header.count];
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.isDeltaEncoded()) {
+                readDeltas(channel, buffer, values);
+            } else {
+                readRaw(channel, buffer, values);
+            }
+            return values;
+        } finally {
+            try { file.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    /**
+     * Writes <code>values</code> to the file specified by
+     * <code>filename</code> in the binary format
+     * @param filename File you wish to write to
+     * @param values Primitive values to write to file
+     * @param deltaEncode true to delta + varint encode the values, which
+     *                    is most compact when they are sorted
+     * @throws IOException if cannot write to file
+     */
+    public static void write(String filename, int[] values, boolean deltaEncode) throws IOException {
+        RandomAccessFile file = null;
+
+        try {
+            file = new RandomAccessFile(filename, "rw");
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+
+            Header header = new Header();
+            header.flags = deltaEncode ? FLAG_DELTA_VARINT : 0;
+            header.count = values.length;
+            header.hash = SortedCheck.multisetHash(values);
+            if (values.length > 0) {
+                int min = values[0], max = values[0];
+                for (int value : values) {
+                    if (value < min) min = value;
+                    if (value > max) max = value;
+                }
+                header.min = min;
+                header.max = max;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            putHeader(buffer, header);
+            if (deltaEncode) {
+                writeDeltas(channel, buffer, values);
+            } else {
+                writeRaw(channel, buffer, values);
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+        } finally {
+            try { file.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    /**
+     * Appends the encoded header to <code>buffer</code>
+     */
+    static void putHeader(ByteBuffer buffer, Header header) {
+        int start = buffer.position();
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort(header.flags);
+        buffer.putLong(header.count);
+        buffer.putInt(header.min);
+        buffer.putInt(header.max);
+        buffer.putLong(header.hash);
+        buffer.putInt(headerCrc(buffer, start));
+        buffer.putInt(0);                                   // Reserved
+    }
+
+    /**
+     * Reads and validates the header at the start of <code>channel</code>
+     * and leaves the channel positioned at the first value
+     */
+    static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(0);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new IOException("Truncated header");
+        }
+        buffer.flip();
+
+        if (buffer.getInt(0) != MAGIC) throw new IOException("Not a binary data file");
+        if (buffer.getShort(4) != VERSION) throw new IOException("Unsupported version " + buffer.getShort(4));
+        if (buffer.getInt(32) != headerCrc(buffer, 0)) throw new IOException("Header checksum mismatch");
+
+        Header header = new Header();
+        header.flags = buffer.getShort(6);
+        header.count = buffer.getLong(8);
+        header.min = buffer.getInt(16);
+        header.max = buffer.getInt(20);
+        header.hash = buffer.getLong(24);
+        if (header.count < 0) throw new IOException("Invalid element count " + header.count);
+        return header;
+    }
+
+    /**
+     * CRC32 of the 32 header bytes starting at <code>start</code>
+     */
+    private static int headerCrc(ByteBuffer buffer, int start) {
+        CRC32 crc = new CRC32();
+        ByteBuffer fields = buffer.duplicate();
+        fields.limit(start + 32).position(start);
+        crc.update(fields);
+        return (int)crc.getValue();
+    }
+
+    private static void readRaw(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        int index = 0;
+        buffer.clear();
+        while (index < values.length) {
+            if (channel.read(buffer) < 0) throw new IOException("Truncated data");
+            buffer.flip();
+            IntBuffer ints = buffer.asIntBuffer();
+            int n = Math.min(ints.remaining(), values.length - index);
+            ints.get(values, index, n);
+            index += n;
+            buffer.position(buffer.position() + n*4);
+            buffer.compact();
+        }
+    }
+
+    private static void writeRaw(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        int index = 0;
+        while (index < values.length) {
+            IntBuffer ints = buffer.asIntBuffer();
+            int n = Math.min(ints.remaining(), values.length - index);
+            ints.put(values, index, n);
+            index += n;
+            buffer.position(buffer.position() + n*4);
+            if (index < values.length) {
+                buffer.flip();
+                writeFully(channel, buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    private static void readDeltas(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        long previous = 0;
+        boolean eof = false;
+        buffer.clear();
+        buffer.flip();
+        for (int i = 0; i < values.length; i++) {
+            // Keep at least one full varint available in the buffer
+            if (buffer.remaining() < 10 && !eof) {
+                buffer.compact();
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) { eof = true; break; }
+                }
+                buffer.flip();
+            }
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (!buffer.hasRemaining()) throw new IOException("Truncated data");
+                b = buffer.get();
+                zigzag |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0 && shift < 70);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[i] = (int)previous;
+        }
+    }
+
+    private static void writeDeltas(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        long previous = 0;
+        for (int value : values) {
+            if (buffer.remaining() < 10) {
+                buffer.flip();
+                writeFully(channel, buffer);
+                buffer.clear();
+            }
+            long delta = value - previous;
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer.put((byte)((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            buffer.put((byte)zigzag);
+            previous = value;
+        }
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Class Object";
+    }
+}
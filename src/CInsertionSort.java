@@ -1,31 +1,58 @@
 public class CInsertionSort extends Sorter{
 
+    private static UnsatisfiedLinkError loadError;              // Set if the library could not be loaded
+
+    static {
+        try {
+            System.loadLibrary("insertSort");
+        } catch (UnsatisfiedLinkError ex) {
+            loadError = ex;
+        }
+    }
+
     @Override
     protected void sort(Integer[]... values) {
         if (values.length == 1) sortedValues = values[0];                               memHits+=3;
         if (this.sortedValues == null) return;                                          memHits++;
 
         // Create copy of sortedValues as a primitive int array
-        int[] sortedInts = new int[sortedValues.length];                                memHits+=2;
-        for (int i = 0; i < sortedInts.length; i++) {                                   memHits+=2;
-            sortedInts[i] = sortedValues[i];                                            memHits+=2;
+        int[] sortedInts = new int[sortedValues.length];
+        for (int i = 0; i < sortedInts.length; i++) {
+            sortedInts[i] = sortedValues[i];
         }
+        memHits += 2 + 4L*sortedInts.length;                                            // 2 per loop test, 2 per copy
 
-        // Load dynamic library and call C sorting method
-        System.loadLibrary("insertSort");
-        memHits += insertSort(sortedInts);
+        // Call C sorting method.  The native routine cannot poll
+        // the cancel flag, so it is checked either side
+        checkCancelled();
+        memHits += nativeSort(sortedInts);
+        checkCancelled();
 
         // Convert primitive int array back to Integers
-        for (int i = 0; i < sortedInts.length; i++) {                                   memHits+=2;
-            sortedValues[i] = sortedInts[i];                                            memHits+=2;
+        for (int i = 0; i < sortedInts.length; i++) {
+            sortedValues[i] = sortedInts[i];
         }
+        memHits += 4L*sortedInts.length;
 
         // Sort complete. Set flag to true unless hardware failure
         memHits++;
         sortComplete = !virtualHardwareFailure();
     }
 
-    private native int insertSort(int[] values);
+    /**
+     * Sorts <code>values</code> in place with the native insertion sort
+     * and returns the number of memory accesses it made.  Used by
+     * <code>IntCInsertionSort</code> to sort primitive arrays without
+     * the boxed copies made by <code>sort</code>.
+     * @param values primitive values to sort in place
+     * @return number of memory accesses made by the native routine
+     */
+    long nativeSort(int[] values) {
+        if (loadError != null) throw loadError;
+        return insertSort(values);
+    }
+
+    private native long insertSort(int[] values);
 
     @Override
     public String toString() {
@@ -0,0 +1,153 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable snapshot of parsed input values, taken once so that
+ * every alternate of a recovery block can be restored from it with
+ * a bulk copy instead of re-reading and re-parsing the input file.
+ *
+ * The snapshot lives outside the Java heap, either in direct
+ * <code>ByteBuffer</code>s or in a read-only memory-mapped temporary
+ * file.  A CRC32 of its contents is taken when it is created and
+ * verified on every restore, so a corrupted checkpoint is detected.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class Checkpoint implements Closeable {
+
+    private static final int SEGMENT_INTS = 1 << 28;               // Ints per buffer, 1 GB
+
+    private final ByteBuffer[] segments;
+    private final int count;
+    private final long crc;
+    private final File file;                                       // Backing file, null if in memory
+
+    private Checkpoint(ByteBuffer[] segments, int count, File file) {
+        this.segments = segments;
+        this.count = count;
+        this.file = file;
+        this.crc = checksum(segments);
+    }
+
+    /**
+     * Takes a checkpoint of <code>values</code> in direct memory
+     * @param values Values to snapshot
+     * @return the checkpoint
+     */
+    public static Checkpoint inMemory(int[] values) {
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(values.length)];
+        for (int s = 0; s < segments.length; s++) {
+            int from = s * SEGMENT_INTS;
+            int n = Math.min(SEGMENT_INTS, values.length - from);
+            segments[s] = ByteBuffer.allocateDirect(n * 4).order(ByteOrder.LITTLE_ENDIAN);
+            segments[s].asIntBuffer().put(values, from, n);
+        }
+        return new Checkpoint(segments, values.length, null);
+    }
+
+    /**
+     * Takes a checkpoint of <code>values</code> in a temporary file
+     * that is mapped read-only and deleted on <code>close</code>
+     * @param values Values to snapshot
+     * @param dir Directory for the temporary file, null for the default
+     * @return the checkpoint
+     * @throws IOException if cannot write the temporary file
+     */
+    public static Checkpoint mapped(int[] values, File dir) throws IOException {
+        File file = File.createTempFile("checkpoint", ".bin", dir);
+        file.deleteOnExit();
+        RandomAccessFile raf = null;
+
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 22).order(ByteOrder.LITTLE_ENDIAN);
+            int index = 0;
+            while (index < values.length) {
+                buffer.clear();
+                int n = Math.min(buffer.capacity() / 4, values.length - index);
+                buffer.asIntBuffer().put(values, index, n);
+                buffer.limit(n * 4);
+                BinaryIntFile.writeFully(channel, buffer);
+                index += n;
+            }
+
+            ByteBuffer[] segments = new ByteBuffer[segmentCount(values.length)];
+            for (int s = 0; s < segments.length; s++) {
+                long from = (long)s * SEGMENT_INTS;
+                long n = Math.min(SEGMENT_INTS, values.length - from);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, from * 4, n * 4)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new Checkpoint(segments, values.length, file);
+        } catch (IOException ex) {
+            file.delete();
+            throw ex;
+        } finally {
+            try { raf.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    public int size() { return count; }
+
+    /**
+     * Restores a fresh copy of the checkpointed values after
+     * verifying the integrity of the checkpoint
+     * @return new array holding the checkpointed values
+     * @throws IOException if the checkpoint is corrupted
+     */
+    public int[] restore() throws IOException {
+        int[] values = new int[count];
+        restoreInto(values);
+        return values;
+    }
+
+    /**
+     * Restores the checkpointed values into <code>values</code> after
+     * verifying the integrity of the checkpoint
+     * @param values Array of at least <code>size()</code> values to fill
+     * @throws IOException if the checkpoint is corrupted
+     */
+    public void restoreInto(int[] values) throws IOException {
+        if (checksum(segments) != crc) {
+            throw new IOException("Checkpoint corrupted");
+        }
+        for (int s = 0; s < segments.length; s++) {
+            IntBuffer ints = segments[s].duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            ints.get(values, s * SEGMENT_INTS, ints.remaining());
+        }
+    }
+
+    private static int segmentCount(int count) {
+        return Math.max(1, (count + SEGMENT_INTS - 1) / SEGMENT_INTS);
+    }
+
+    private static long checksum(ByteBuffer[] segments) {
+        CRC32 crc = new CRC32();
+        for (ByteBuffer segment : segments) {
+            crc.update(segment.duplicate());
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Releases the checkpoint, deleting its backing file if any
+     */
+    @Override
+    public void close() {
+        if (file != null) file.delete();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Object { values: " + count
+                + ", mapped: " + (file != null) + ", crc: " + Long.toHexString(crc) + " }";
+    }
+}
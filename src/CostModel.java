@@ -0,0 +1,192 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Predicts the run time of a sorter from the size of its input, so
+ * each attempt of a recovery block can be given a timeout in
+ * proportion to the work it has to do.  Every sorter class has a
+ * complexity class, and the model keeps its cost in nanoseconds per
+ * unit of that complexity (n, n log n or n squared), fitted by an
+ * exponentially weighted moving average over past runs and persisted
+ * in a properties file between runs.
+ *
+ * Runs that ended on their own are averaged into the cost.  A run
+ * stopped by its timeout shows only that the sorter needs at least
+ * the time it was given, so the cost is raised to at least that much;
+ * a model that predicts too little then grows by the timeout
+ * multiplier on each timeout instead of killing healthy sorters
+ * forever.  Such a lower bound is never taken as the first cost of a
+ * class: stopped runs are ignored until the class has a run that
+ * ended on its own.
+ *
+ * The complexity of a class can be set in the file with the key
+ * <code>Class.complexity</code>.
+ *
+ * A file is loaded once per process and its model shared by every job
+ * that names it, so concurrent jobs of a <code>SortService</code> fit
+ * the same model and a save never drops another job's runs.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class CostModel {
+
+    private static final double ALPHA = 0.3;                    // Weight of the newest run
+
+    /**
+     * Growth of the run time of a sorter with its input size
+     */
+    public enum Complexity {
+        N, NLOGN, N2;
+
+        /**
+         * Returns the units of work of an input of <code>n</code> values
+         */
+        public double units(long n) {
+            n = Math.max(n, 2);
+            switch (this) {
+                case N: return n;
+                case N2: return (double)n * n;
+                default: return n * (Math.log(n) / Math.log(2));
+            }
+        }
+    }
+
+    private static final Map<String, Complexity> DEFAULT_COMPLEXITY = new HashMap<String, Complexity>();
+
+    static {
+        DEFAULT_COMPLEXITY.put("CInsertionSort", Complexity.N2);
+        DEFAULT_COMPLEXITY.put("IntCInsertionSort", Complexity.N2);
+        DEFAULT_COMPLEXITY.put("CountingSort", Complexity.N);
+        DEFAULT_COMPLEXITY.put("RadixSort", Complexity.N);
+        DEFAULT_COMPLEXITY.put("KWayMerge", Complexity.N);
+        DEFAULT_COMPLEXITY.put("IncrementalMerge", Complexity.N);
+        DEFAULT_COMPLEXITY.put("OffHeapRadixSort", Complexity.N);
+    }
+
+    private static final Map<String, CostModel> models = new HashMap<String, CostModel>();    // By file
+
+    private final String filename;
+    private final Properties properties = new Properties();
+
+    private CostModel(String filename) {
+        this.filename = filename;
+    }
+
+    /**
+     * Returns the model persisted in <code>filename</code>, loading it
+     * on first use, or an empty model if the file does not exist yet.
+     * Later calls for the same file return the same model.
+     * @param filename properties file of the model
+     * @return the model
+     * @throws IOException if the file exists but cannot be read
+     */
+    public static synchronized CostModel load(String filename) throws IOException {
+        String key = new File(filename).getAbsolutePath();
+        CostModel model = models.get(key);
+        if (model != null) return model;
+
+        model = new CostModel(filename);
+        if (new File(filename).exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(filename);
+                model.properties.load(in);
+            } finally {
+                try { in.close(); } catch (NullPointerException ex) {}
+            }
+        }
+        models.put(key, model);
+        return model;
+    }
+
+    /**
+     * Saves the model to its file, replacing the file atomically
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        File target = new File(filename).getAbsoluteFile();
+        File temp = File.createTempFile(target.getName() + ".", ".tmp", target.getParentFile());
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            properties.store(out, "Sorter costs in ns per unit of their complexity");
+            out.close();
+            FileHelper.moveAtomically(temp, target);
+        } finally {
+            try { out.close(); } catch (NullPointerException ex) {}
+            temp.delete();
+        }
+    }
+
+    /**
+     * Returns the complexity class of a sorter class
+     */
+    public synchronized Complexity getComplexity(String sortClass) {
+        String value = properties.getProperty(sortClass + ".complexity");
+        if (value != null) return Complexity.valueOf(value);
+        Complexity complexity = DEFAULT_COMPLEXITY.get(sortClass);
+        return (complexity != null) ? complexity : Complexity.NLOGN;
+    }
+
+    /**
+     * Predicts the run time of a sorter class on <code>n</code> values
+     * @param sortClass name of the sorter class
+     * @param n number of values
+     * @return predicted milliseconds, or -1 if the class has no runs yet
+     */
+    public synchronized double predictMillis(String sortClass, long n) {
+        String cost = properties.getProperty(sortClass + ".nanosPerUnit");
+        if (cost == null) return -1;
+        return Double.parseDouble(cost) * getComplexity(sortClass).units(n) / 1e6;
+    }
+
+    /**
+     * Fits the model to a run of <code>sorter</code> on <code>n</code>
+     * values
+     * @param sorter sorter that has run
+     * @param n number of values it was given
+     */
+    public void record(Sorter sorter, long n) {
+        record(sorter, n, 1);
+    }
+
+    /**
+     * Fits the model to a run of <code>sorter</code> on <code>n</code>
+     * values that shared the processors with other runs
+     * @param sorter sorter that has run
+     * @param n number of values it was given
+     * @param slowdown factor by which sharing slowed the run
+     */
+    public synchronized void record(Sorter sorter, long n, double slowdown) {
+        if (sorter.getWallTime() < 0) return;
+        String sortClass = sorter.getClass().getName();
+        double observed = sorter.getWallTime() / slowdown / getComplexity(sortClass).units(n);
+        String cost = properties.getProperty(sortClass + ".nanosPerUnit");
+        long samples = Long.parseLong(properties.getProperty(sortClass + ".samples", "0"));
+        if (cost == null && sorter.isCancelled()) return;                   // Only a lower bound
+
+        double fitted;
+        if (cost == null) {
+            fitted = observed;
+        } else if (sorter.isCancelled()) {
+            // Censored run: the sorter needed more than it was given
+            fitted = Math.max(Double.parseDouble(cost), observed);
+        } else {
+            fitted = ALPHA * observed + (1 - ALPHA) * Double.parseDouble(cost);
+        }
+        properties.setProperty(sortClass + ".nanosPerUnit", Double.toString(fitted));
+        properties.setProperty(sortClass + ".samples", Long.toString(samples + 1));
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Object { file: " + filename + ", " + properties + " }";
+    }
+}
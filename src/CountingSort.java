@@ -0,0 +1,68 @@
+/**
+ * Subclass of IntSorter that sorts primitive values with a
+ * counting sort.  Runs in O(n + range) time where range is the
+ * difference between the largest and smallest value, so it suits
+ * bounded inputs such as those of <code>DataGenerator</code>.
+ * Inputs whose range exceeds <code>MAX_RANGE</code> are refused.
+ *
+ * Memory accesses are counted analytically per pass.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class CountingSort extends IntSorter {
+
+    public static final int MAX_RANGE = 1 << 24;               // Largest range counted, 64 MB of counts
+    private static final int CHECK_INTERVAL = 1 << 16;          // Values processed between cancel checks
+
+    /**
+     * Sort primitive values using a counting sort.
+     * Details about arguments can be found in <code>IntSorter</code>
+     */
+    @Override
+    protected void sort(int[]... values) {
+        if (values.length == 1) sortedInts = values[0];                                     memHits+=3;
+        if (sortedInts == null) return;                                                     memHits++;
+        int n = sortedInts.length;
+
+        // Find range of the values
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int value : sortedInts) {
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+        memHits += n;
+        if (n == 0) min = max = 0;
+        long range = (long)max - min + 1;
+        if (range > MAX_RANGE) {
+            throw new IllegalArgumentException("Range " + range + " too large for counting sort");
+        }
+
+        // Count occurrences of each value
+        int[] counts = new int[(int)range];
+        for (int from = 0; from < n; from += CHECK_INTERVAL) {
+            checkCancelled();
+            int to = Math.min(n, from + CHECK_INTERVAL);
+            for (int i = from; i < to; i++) {
+                counts[sortedInts[i] - min]++;
+            }
+        }
+        memHits += 3L*n;                                                                    // read value, read and write count
+
+        // Write each value as many times as it was counted
+        int index = 0;
+        for (int v = 0; v < counts.length; v++) {
+            int count = counts[v];
+            if (count == 0) continue;
+            if ((v & (CHECK_INTERVAL - 1)) == 0) checkCancelled();
+            int value = min + v;
+            for (int end = index + count; index < end; index++) {
+                sortedInts[index] = value;
+            }
+        }
+        memHits += range + n;                                                               // read counts, write values
+
+        // Sort complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+}
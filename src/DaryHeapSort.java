@@ -0,0 +1,154 @@
+/**
+ * Subclass of IntSorter that sorts primitive values in place with a
+ * cache-efficient heap sort.  Keeps the O(1) extra memory and
+ * O(n log n) worst case of heap sort while touching far fewer cache
+ * lines than <code>HeapSort</code>:
+ *
+ *  - the heap is 4-ary, so it is half as deep as a binary heap and
+ *    the four children of a node are adjacent, 16 bytes in one cache
+ *    line in the common case
+ *  - values are moved into a hole rather than swapped, one write per
+ *    level instead of three
+ *  - the sort phase uses Floyd's bottom-up sift: the hole left by the
+ *    maximum is moved down to a leaf along the largest children without
+ *    comparing against the displaced value, which is then sifted up the
+ *    usually short distance to its place
+ *  - on the way down the largest child is chosen without branches
+ *
+ * The access count of the fault model is the exact number of array
+ * reads and writes made, counted in locals and added to
+ * <code>memHits</code> once per phase.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class DaryHeapSort extends IntSorter {
+
+    private static final int D = 4;                             // Children per node
+    private static final int CHECK_MASK = (1 << 12) - 1;        // Cancel checked every 4096 steps
+
+    /**
+     * Sort primitive values using a 4-ary bottom-up heap sort.
+     * Details about arguments can be found in <code>IntSorter</code>
+     */
+    @Override
+    protected void sort(int[]... values) {
+        if (values.length == 1) sortedInts = values[0];                                     memHits+=3;
+        if (sortedInts == null) return;                                                     memHits++;
+        int[] a = sortedInts;
+        int n = a.length;
+
+        // Build the max heap, sifting down every internal node from the last
+        long hits = 0;
+        for (int i = n > 1 ? (n - 2) / D : -1; i >= 0; i--) {
+            if ((i & CHECK_MASK) == 0) checkCancelled();
+            hits += siftDown(a, i, n);
+        }
+        memHits += hits;
+
+        // Move the maximum behind the shrinking heap and refill the root
+        hits = 0;
+        for (int end = n - 1; end > 0; end--) {
+            if ((end & CHECK_MASK) == 0) checkCancelled();
+            int value = a[end];
+            a[end] = a[0];
+            hits += 3 + siftBottomUp(a, value, end);                                        // read last, move root
+        }
+        memHits += hits;
+
+        // Sort complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    /**
+     * Sifts <code>a[hole]</code> down the heap <code>a[0, n)</code>
+     * @return number of array accesses made
+     */
+    private static long siftDown(int[] a, int hole, int n) {
+        int value = a[hole];
+        long hits = 2;                                                                      // read value, final write
+        while (true) {
+            int first = D*hole + 1;
+            if (first >= n) break;
+            int child = largestChild(a, first, n);
+            hits += Math.min(D, n - first);
+            if (a[child] <= value) break;
+            a[hole] = a[child];
+            hits++;
+            hole = child;
+        }
+        a[hole] = value;
+        return hits;
+    }
+
+    /**
+     * Places <code>value</code> in the heap <code>a[0, n)</code> whose
+     * root is vacant, by moving the hole down to a leaf along the
+     * largest children and then sifting <code>value</code> up from it
+     * @return number of array accesses made
+     */
+    private long siftBottomUp(int[] a, int value, int n) {
+        int hole = 0;
+        int levels = 0;
+        long hits = 1;                                                                      // final write
+
+        // Nodes whose four children all exist.  The largest child is found
+        // with data independent selects, which avoid mispredicted branches
+        int first;
+        while ((first = D*hole + 1) + D <= n) {
+            int v0 = a[first], v1 = a[first + 1], v2 = a[first + 2], v3 = a[first + 3];
+            int m = lessMask(v0, v1);
+            int left = first + (m & 1), leftValue = v0 ^ ((v0 ^ v1) & m);
+            m = lessMask(v2, v3);
+            int right = first + 2 + (m & 1), rightValue = v2 ^ ((v2 ^ v3) & m);
+            m = lessMask(leftValue, rightValue);
+            a[hole] = leftValue ^ ((leftValue ^ rightValue) & m);
+            hole = left ^ ((left ^ right) & m);
+            levels++;
+        }
+        hits += (D + 1L)*levels;
+        if (first < n) {
+            int child = largestChild(a, first, n);
+            a[hole] = a[child];
+            hits += n - first + 1;
+            hole = child;
+        }
+
+        while (hole > 0) {
+            int parent = (hole - 1) >> 2;
+            hits++;
+            if (a[parent] >= value) break;
+            a[hole] = a[parent];
+            hits++;
+            hole = parent;
+        }
+        a[hole] = value;
+        return hits;
+    }
+
+    /**
+     * Returns all ones if <code>x &lt; y</code> and zero otherwise,
+     * without a branch
+     */
+    private static int lessMask(int x, int y) {
+        return (int)(((long)x - y) >> 63);
+    }
+
+    /**
+     * Returns the index of the largest of the children of a node,
+     * which start at <code>first</code>
+     */
+    private static int largestChild(int[] a, int first, int n) {
+        if (first + D <= n) {
+            // All four children present
+            int left = a[first] >= a[first + 1] ? first : first + 1;
+            int right = a[first + 2] >= a[first + 3] ? first + 2 : first + 3;
+            return a[left] >= a[right] ? left : right;
+        }
+        int largest = first;
+        for (int c = first + 1; c < n; c++) {
+            if (a[c] > a[largest]) largest = c;
+        }
+        return largest;
+    }
+}
@@ -1,5 +1,16 @@
 import java.io.*;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * DataGenerator generates a list of a specified size of
@@ -7,51 +18,320 @@ import java.util.Random;
  * file, each value separated by a space.
  * The program can be run from the command line as follows:
  *
- *      java DataGenerator <filename> <datasize>
+ *      java DataGenerator <filename> <datasize> [options]
+ *
+ * With <code>--binary</code>, or when <filename> ends with
+ * <code>.bin</code>, the values are written in the compact binary
+ * format of <code>BinaryIntFile</code> instead.
  *
  * Where <filename> is the name of the file you wish to write to (will
  * be created if doesn't already exist) and <datasize> is the number of
  * random integers you wish to write to that file.
  *
+ * Values are generated and encoded in parallel in chunks, each chunk
+ * with its own <code>SplittableRandom</code> derived from the seed, and
+ * the chunks are written to the file in order as they complete.  The
+ * output therefore depends only on the options and the seed, and only
+ * a few chunks are ever held in memory, so files far larger than the
+ * heap can be generated.  The distributions are:
+ *
+ *      uniform     values drawn uniformly from the range (default)
+ *      sorted      ascending values spread evenly over the range
+ *      reversed    descending values spread evenly over the range
+ *      nearly      sorted values with a number of random swaps
+ *      fewunique   a few distinct values spread over the range
+ *      zipf        Zipf distributed ranks from the bottom of the range
+ *
  * @author Tanner Rutgers (trutgers)
  */
 public class DataGenerator {
 
+    private static final int CHUNK = 1 << 18;                   // Values generated per task
+
+    private final String dist;
+    private final long count;
+    private final long lo, hi;                                  // Range of values, hi exclusive
+    private final long seed;
+    private final int unique;
+    private final Map<Long, Long> swaps = new HashMap<Long, Long>();    // Index to source index for nearly
+    private final ZipfSampler zipf;
+
+    /**
+     * Creates a generator of <code>count</code> values as described by
+     * the options of the command line
+     * @param count number of values to generate
+     * @param options parsed command line arguments
+     */
+    public DataGenerator(long count, Options options) {
+        this.count = count;
+        this.dist = options.getString("dist", "uniform");
+        this.seed = options.getLong("seed", System.nanoTime());
+        String[] range = options.getString("range", "0:1000").split(":");
+        this.lo = Long.parseLong(range[0]);
+        this.hi = Long.parseLong(range[1]);
+        this.unique = options.getInt("unique", 16);
+
+        if (lo < Integer.MIN_VALUE || hi > (long)Integer.MAX_VALUE + 1 || lo >= hi) {
+            throw new IllegalArgumentException("Range must be lo:hi with lo < hi within the int range");
+        }
+        if (unique < 1) throw new IllegalArgumentException("Number of unique values must be positive");
+        if (!dist.matches("uniform|sorted|reversed|nearly|fewunique|zipf")) {
+            throw new IllegalArgumentException("Unknown distribution " + dist);
+        }
+
+        if (dist.equals("nearly") && count > 1) {
+            // Apply the swaps to a sparse permutation of the indices
+            long k = options.getLong("swaps", Math.min(count / 1000, 1 << 20));
+            SplittableRandom random = new SplittableRandom(seed);
+            for (long s = 0; s < k; s++) {
+                long i = random.nextLong(count), j = random.nextLong(count);
+                Long si = swaps.get(i), sj = swaps.get(j);
+                swaps.put(i, sj != null ? sj : j);
+                swaps.put(j, si != null ? si : i);
+            }
+        }
+        zipf = dist.equals("zipf") ? new ZipfSampler(hi - lo, options.getDouble("zipf", 1.0)) : null;
+    }
+
     public static void main(String[] args) {
     	if (args.length == 1 && args[0].equals("--help")) {
     		System.out.println("DataGenerator generates random integers and writes them to a file.");
     		System.out.println("Syntax for running DataGenerator is as follows:\n");
     		printSyntax();
-    	} else if (args.length != 2) {
+    		return;
+    	}
+
+        Options options = new Options(args);
+        if (options.size() != 2) {
         	System.out.println("Invalid Syntax. Please use:\n");
         	printSyntax();
         } else {
+            String filename = options.get(0);
+            boolean binary = options.has("binary") || FileHelper.isBinaryName(filename);
             try {
-                FileHelper.writeToFile(args[0], getRandomInts(Integer.parseInt(args[1])));
+                DataGenerator generator = new DataGenerator(Long.parseLong(options.get(1)), options);
+                generator.write(filename, binary,
+                        options.getInt("parallelism", Runtime.getRuntime().availableProcessors()));
+            } catch (IllegalArgumentException ex) {
+                System.out.println("Invalid option: " + ex.getMessage() + "\n");
+                printSyntax();
             } catch (IOException ex) {
-                System.out.println("Could not write to file " + args[0]
+                System.out.println("Could not write to file " + filename
                     + "\nTry a different filename");
             }
         }
     }
 
+    /**
+     * Generates the values and writes them to <code>filename</code>.
+     * Chunks are generated and encoded on a fork/join pool, at most a
+     * few per thread ahead of the chunk being written.
+     * @param filename file to write to
+     * @param binary write the binary format instead of text
+     * @param parallelism number of generating threads
+     * @throws IOException if cannot write to file
+     */
+    public void write(String filename, boolean binary, int parallelism) throws IOException {
+        ForkJoinPool pool = SortExecutor.forkJoinPool(Math.max(1, parallelism));
+        Deque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+        long chunks = (count + CHUNK - 1) / CHUNK;
+        int window = 2 * pool.getParallelism() + 1;
+        BinaryIntFile.Header header = new BinaryIntFile.Header();
+        RandomAccessFile file = null;
+
+        try {
+            file = new RandomAccessFile(filename, "rw");
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            if (binary) channel.position(BinaryIntFile.HEADER_BYTES);
+
+            long next = 0;
+            while (next < chunks || !pending.isEmpty()) {
+                while (next < chunks && pending.size() < window) {
+                    pending.addLast(pool.submit(new ChunkTask(next++, binary)));
+                }
+                Chunk chunk = pending.removeFirst().get();
+                BinaryIntFile.writeFully(channel, chunk.bytes);
+                if (chunk.count > 0) {
+                    if (header.count == 0 || chunk.min < header.min) header.min = chunk.min;
+                    if (header.count == 0 || chunk.max > header.max) header.max = chunk.max;
+                    header.count += chunk.count;
+                    header.hash += chunk.hash;
+                }
+            }
+
+            if (binary) {
+                ByteBuffer buffer = ByteBuffer.allocate(BinaryIntFile.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                BinaryIntFile.putHeader(buffer, header);
+                buffer.flip();
+                channel.position(0);
+                BinaryIntFile.writeFully(channel, buffer);
+            }
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("Interrupted while generating");
+        } catch (ExecutionException ex) {
+            throw new IOException("Could not generate values", ex.getCause());
+        } finally {
+            for (Future<Chunk> chunk : pending) chunk.cancel(true);
+            try { file.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    /**
+     * Generates the values of chunk <code>index</code> into <code>values</code>
+     * @return number of values generated
+     */
+    private int fill(long index, int[] values) {
+        long from = index * CHUNK;
+        int n = (int)Math.min(CHUNK, count - from);
+        SplittableRandom random = new SplittableRandom(SortedCheck.mix(seed + index));
+        long span = hi - lo;
+
+        for (int i = 0; i < n; i++) {
+            long value;
+            if (dist.equals("uniform")) {
+                value = lo + random.nextLong(span);
+            } else if (dist.equals("fewunique")) {
+                value = lo + random.nextInt(unique) * span / unique;
+            } else if (dist.equals("zipf")) {
+                value = lo + zipf.sample(random) - 1;
+            } else {
+                long position = from + i;
+                if (dist.equals("reversed")) position = count - 1 - position;
+                Long source = swaps.isEmpty() ? null : swaps.get(position);
+                value = sortedValue(source != null ? source : position);
+            }
+            values[i] = (int)value;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the value at <code>position</code> of an ascending
+     * sequence of <code>count</code> values spread evenly over the range
+     */
+    private long sortedValue(long position) {
+        return lo + (long)((double)position * (hi - lo) / count);
+    }
 
     /**
-     * Return an ArrayList containing <code>size</code> random integers
-     * from 0 (inclusive) to 1000 (exclusive)
-     * @param size Number of random integers to include
-     * @return the ArrayList of random integers, empty ArrayList if
-     *         <code>size</code> is 0.
+     * Values of one chunk, encoded for the file, with the statistics
+     * needed for a binary header
      */
-    private static Integer[] getRandomInts(int size) {
-        Integer[] randoms = new Integer[size];
-        Random random = new Random();
+    private static class Chunk {
+        ByteBuffer bytes;
+        int count, min, max;
+        long hash;
+    }
 
-        for (int i = 0; i<size; i++) {
-            randoms[i] = random.nextInt(1000);
+    /**
+     * Task generating and encoding one chunk
+     */
+    private class ChunkTask implements Callable<Chunk> {
+        private final long index;
+        private final boolean binary;
+
+        ChunkTask(long index, boolean binary) {
+            this.index = index;
+            this.binary = binary;
         }
 
-        return randoms;
+        @Override
+        public Chunk call() {
+            int[] values = new int[CHUNK];
+            Chunk chunk = new Chunk();
+            chunk.count = fill(index, values);
+            chunk.min = Integer.MAX_VALUE;
+            chunk.max = Integer.MIN_VALUE;
+
+            ByteBuffer bytes = ByteBuffer.allocate(chunk.count * (binary ? 4 : 12)).order(ByteOrder.LITTLE_ENDIAN);
+            byte[] digits = new byte[11];
+            for (int i = 0; i < chunk.count; i++) {
+                int value = values[i];
+                if (value < chunk.min) chunk.min = value;
+                if (value > chunk.max) chunk.max = value;
+                chunk.hash += SortedCheck.mix(value);
+                if (binary) {
+                    bytes.putInt(value);
+                } else {
+                    putDecimal(bytes, value, digits);
+                    bytes.put((byte)' ');
+                }
+            }
+            bytes.flip();
+            chunk.bytes = bytes;
+            return chunk;
+        }
+    }
+
+    private static void putDecimal(ByteBuffer buffer, int value, byte[] digits) {
+        long v = value;
+        if (v < 0) {
+            buffer.put((byte)'-');
+            v = -v;
+        }
+        int d = digits.length;
+        do {
+            digits[--d] = (byte)('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        buffer.put(digits, d, digits.length - d);
+    }
+
+    /**
+     * Samples Zipf distributed ranks in <code>[1, n]</code> by
+     * rejection-inversion (Hormann and Derflinger), in constant
+     * expected time and space for any number of ranks
+     */
+    private static class ZipfSampler {
+        private final long n;
+        private final double exponent;
+        private final double hIntegralX1, hIntegralN, s;
+
+        ZipfSampler(long n, double exponent) {
+            if (exponent <= 0) throw new IllegalArgumentException("Zipf exponent must be positive");
+            this.n = n;
+            this.exponent = exponent;
+            hIntegralX1 = hIntegral(1.5) - 1;
+            hIntegralN = hIntegral(n + 0.5);
+            s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+
+        long sample(SplittableRandom random) {
+            while (true) {
+                double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                long k = (long)(x + 0.5);
+                if (k < 1) k = 1;
+                else if (k > n) k = n;
+                if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) return k;
+            }
+        }
+
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return helper2((1 - exponent) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = x * (1 - exponent);
+            if (t < -1) t = -1;
+            return Math.exp(helper1(t) * x);
+        }
+
+        /** log(1 + x) / x, accurate near 0 */
+        private static double helper1(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0/3 - 0.25 * x));
+        }
+
+        /** (exp(x) - 1) / x, accurate near 0 */
+        private static double helper2(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+        }
     }
 
     /**
@@ -59,15 +339,25 @@ public class DataGenerator {
      */
     private static void printSyntax() {
         StringBuilder sb = new StringBuilder();
-        sb.append("\tjava DataGenerator <filename> <datasize>\n\n")
+        sb.append("\tjava DataGenerator <filename> <datasize> [options]\n\n")
                 .append("Where <filename> is the name of the file in the current directory \n")
                 .append("you wish to write to and <datasize> is the number of random integers \n")
-                .append("you wish to write.");
+                .append("you wish to write.\n\n")
+                .append("Options:\n\n")
+                .append("\t--binary = write the binary format (default for .bin filenames)\n")
+                .append("\t--dist=<name> = uniform (default), sorted, reversed, nearly, fewunique or zipf\n")
+                .append("\t--range=<lo:hi> = values from lo (inclusive) to hi (exclusive), default 0:1000\n")
+                .append("\t--seed=<n> = seed for reproducible output (default random)\n")
+                .append("\t--swaps=<k> = random swaps of the nearly distribution (default datasize/1000)\n")
+                .append("\t--unique=<n> = distinct values of the fewunique distribution (default 16)\n")
+                .append("\t--zipf=<s> = exponent of the zipf distribution (default 1.0)\n")
+                .append("\t--parallelism=<n> = generating threads (default number of processors)");
         System.out.println(sb.toString());
     }
-    
+
     @Override
     public String toString() {
-        return this.getClass().getName() + "Class Object";
+        return this.getClass().getName() + " Object { dist: " + dist + ", count: " + count
+                + ", range: [" + lo + ", " + hi + "), seed: " + seed + " }";
     }
 }
@@ -1,9 +1,22 @@
 import java.io.File;
 import java.io.IOException;
-import java.util.Timer;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Executive class for running various sorting Threads
+ * Executive class for running various sorting tasks
  * implementing the Recovery Block reliable systems scheme.
  * Class will read a file containing a list of values to be
  * sorted (filename provided by command line) and attempt to sort
@@ -15,9 +28,25 @@ import java.util.Timer;
  */
 public class DataSorter {
 
-    static Integer[] originalValues;
-    static final String primarySortClass = "HeapSort";
-    static final String[] backupSortClasses = new String[] { "CInsertionSort" };
+    static final long CANCEL_WAIT = 1000;           // ms a cancelled sorter is given to stop
+    static final long MIN_TIMEOUT = 100;            // ms, least adaptive timeout of an attempt
+
+    private static final Map<String, Constructor<? extends IntSorter>> constructors =
+            new ConcurrentHashMap<String, Constructor<? extends IntSorter>>();
+
+    // State of one sorting job
+    private int[] originalValues;
+    private BinaryIntFile.Header inputHeader;       // Header of binary input, null for text input
+    private boolean binaryOutput;                   // Write sorted values in the binary format
+    private boolean overlapWrite;                   // Write output while it is adjudicated
+    private int[] selectionRanks;                   // Ranks selected by a partial sort, null to sort fully
+    private RecordFile records;                     // Records sorted by key, null to sort bare values
+    private CostModel costModel;                    // Predicts attempt times, null for fixed timeouts
+    private double timeoutMultiplier;               // Adaptive timeout as a multiple of the prediction
+    private long deadline;                          // System.nanoTime() the job must end by, 0 for none
+    private String primarySortClass = "DaryHeapSort";
+    private String[] backupSortClasses = new String[] { "NativeSort" };
+    private int parallelism = Runtime.getRuntime().availableProcessors();
 
     public static void main(String[] args) {
     	if (args.length == 1 && args[0].equals("--help")) {
@@ -25,96 +54,966 @@ public class DataSorter {
     		System.out.println("Syntax for running DataSorter is as follows:\n");
     		printSyntax();
     	}
-        if (args.length != 5) {
+        Options options = new Options(args);
+        if (options.size() != 5) {
             System.out.println("Invalid Syntax. Please use:\n");
             printSyntax();
-        } else {
-            // Collect command line arguments
-            String inFile = args[0];
-            String outFile = args[1];
-            Double primFail = Double.parseDouble(args[2]);
-            Double backFail = Double.parseDouble(args[3]);
-            Integer timeout = Integer.parseInt(args[4]);
+        } else if (sort(options)) {
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Runs the recovery block described by <code>options</code>, whose
+     * positional arguments are those of the command line.
+     * @param options parsed command line arguments
+     * @return true if a sorter's result was accepted and written to
+     *         the output file, false otherwise
+     */
+    static boolean sort(Options options) {
+        return new DataSorter().run(options);
+    }
 
+    /**
+     * Runs one sorting job.  Each job has its own state, so jobs may
+     * run concurrently on separate <code>DataSorter</code> instances.
+     * @param options parsed command line arguments of the job
+     * @return true if a sorter's result was accepted and written to
+     *         the output file, false otherwise
+     */
+    public boolean run(Options options) {
+        if (options.has("deadline")) {
+            deadline = System.nanoTime() + options.getLong("deadline", 0) * 1000000;
+        }
+        String modelFile = options.getString("cost-model", "costmodel.properties");
+        if (options.has("adaptive-timeout")) {
+            timeoutMultiplier = options.getDouble("adaptive-timeout", 3);
             try {
-                // Collect values to be sorted from specified file
-                String[] values = FileHelper.readFromFile(inFile);
-                originalValues = new Integer[values.length];
-                for (int i = 0; i<values.length; i++) {
-                    originalValues[i] = Integer.parseInt(values[i]);
-                }
+                costModel = CostModel.load(modelFile);
+            } catch (IOException ex) {
+                System.out.println("Could not read from file " + modelFile);
+            }
+        }
+        boolean sorted = recover(options);
+        if (costModel != null) {
+            try {
+                costModel.save();
+            } catch (IOException ex) {
+                System.out.println("Could not write to file " + modelFile);
+            }
+        }
+        // Attempts are recorded under this job, so concurrent jobs never mix their rows
+        if (options.has("metrics")) {
+            String metricsFile = options.getString("metrics", "metrics.csv");
+            try {
+                SortMetrics.getInstance().writeCsv(metricsFile, this);
+            } catch (IOException ex) {
+                System.out.println("Could not write to file " + metricsFile);
+            }
+        } else {
+            SortMetrics.getInstance().discard(this);
+        }
+        return sorted;
+    }
+
+    /**
+     * Runs the recovery block mode selected by <code>options</code>
+     * @param options parsed command line arguments
+     * @return true if a result was accepted and written, false otherwise
+     */
+    private boolean recover(Options options) {
+        // Collect command line arguments
+        String inFile = options.get(0);
+        String outFile = options.get(1);
+        Double primFail = Double.parseDouble(options.get(2));
+        Double backFail = Double.parseDouble(options.get(3));
+        Integer timeout = Integer.parseInt(options.get(4));
+        binaryOutput = options.has("binary") || FileHelper.isBinaryName(outFile);
+        primarySortClass = options.getString("primary", primarySortClass);
+        if (options.has("backups")) {
+            backupSortClasses = options.getString("backups", "").split(",");
+        }
+        parallelism = options.getInt("parallelism", parallelism);
+        overlapWrite = options.has("overlap-write");
+
+        if (options.has("external")) {
+            return sortExternal(inFile, outFile, primFail, backFail, timeout, options.getLong("memory", 0) << 20);
+        }
+        if (options.has("offheap") || options.has("wide") || options.has("records")) {
+            return sortOffHeap(inFile, outFile, primFail, backFail, timeout, options);
+        }
+
+        try {
+            // Collect values to be sorted from specified file
+            inputHeader = BinaryIntFile.isBinary(inFile) ? BinaryIntFile.readHeader(inFile) : null;
+            originalValues = FileHelper.readIntsFromFile(inFile);
+        } catch (IOException ex) {
+            System.out.println("Could not read from file " + inFile);
+            return false;
+        }
+
+        // From here on the input is in memory, so any I/O failure is on the output side
+        try {
+            if (options.has("incremental")) {
+                return sortIncremental(options.getString("incremental", outFile), inFile, outFile,
+                        primFail, backFail, timeout);
+            }
+            if (options.has("smallest") || options.has("largest") || options.has("percentiles")) {
+                return sortSelection(outFile, primFail, backFail, timeout, options);
+            }
+
+            // Choose sorters from the shape of the input unless given explicitly
+            if (options.has("auto")) {
+                SorterSelector selection = SorterSelector.select(originalValues);
+                if (!options.has("primary")) primarySortClass = selection.getPrimary();
+                if (!options.has("backups")) backupSortClasses = selection.getBackups();
+                System.out.println("Selected " + primarySortClass + " with backups "
+                        + Arrays.toString(backupSortClasses) + " for " + selection);
+            }
 
+            if (options.has("concurrent")) {
+                return sortConcurrent(outFile, primFail, backFail, timeout, options.getInt("grace", 0));
+            }
+            if (options.has("chunks")) {
+                return sortChunked(outFile, primFail, backFail, timeout, options.getInt("chunks", parallelism));
+            }
+
+            // Take one snapshot of the parsed input to restore backups from
+            Checkpoint checkpoint = options.getString("checkpoint", "memory").equals("mapped")
+                    ? Checkpoint.mapped(originalValues, null) : Checkpoint.inMemory(originalValues);
+
+            int[] lastResult = null;                // Result of the last failed attempt
+            try {
                 try {
-                    try {
-                        // Create a new thread for primary sorter
-                        Sorter primarySort = (Sorter)Class.forName(primarySortClass).getConstructor().newInstance();
+                    // Create a new task for primary sorter
+                    IntSorter primarySort = createSorter(primarySortClass);
 
-                        // Run primary sorting algorithm
-                        runSort(primarySort, timeout, primFail);
+                    // Run primary sorting algorithm, unless it cannot finish in time
+                    long primaryTimeout = attemptTimeout(primarySortClass, originalValues.length, timeout);
+                    if (primaryTimeout >= 0) {
+                        primarySort.setValues(originalValues);
+                        runSort(primarySort, primaryTimeout, primFail, originalValues.length);
+                        lastResult = primarySort.getSortedInts();
 
-                        // Check if primary sorter finished and run adjudicator results, exit if successful
-                        if (primarySort.didFinish() && SortedCheck.checkSorted(originalValues, primarySort.getSortedValues(), true)) {
-                            FileHelper.writeToFile(outFile, primarySort.getSortedValues());
-                            System.exit(0);
+                        // Check if primary sorter finished and run adjudicator results, return if successful
+                        if (acceptAndWrite(primarySort, "primary", outFile)) {
+                            return true;
                         }
-                    } catch (ReflectiveOperationException ex) {
-                        System.out.println("Could not create thread for " + primarySortClass);
                     }
-                    // Primary failed, print message indicating so
-                    System.out.println("Primary sorter failed");
-                    // Run all backups one by one
-                    for (String backupSortClass : backupSortClasses) {
+                } catch (ReflectiveOperationException ex) {
+                    System.out.println("Could not create thread for " + primarySortClass);
+                }
+                // Primary failed, print message indicating so
+                System.out.println("Primary sorter failed");
+                // Run all backups one by one
+                for (String backupSortClass : backupSortClasses) {
+                    long backupTimeout = attemptTimeout(backupSortClass, originalValues.length, timeout);
+                    if (backupTimeout < 0) continue;
+                    try {
+                        // Restore values from checkpoint, re-reading the file only if it is corrupted
                         try {
-                            // Re-read values from specified file (checkpoint)
-                            values = FileHelper.readFromFile(inFile);
-                            originalValues = new Integer[values.length];
-                            for (int i = 0; i<values.length; i++) {
-                                originalValues[i] = Integer.parseInt(values[i]);
+                            checkpoint.restoreInto(originalValues);
+                        } catch (IOException ex) {
+                            System.out.println(ex.getMessage() + ", re-reading " + inFile);
+                            try {
+                                originalValues = FileHelper.readIntsFromFile(inFile);
+                            } catch (IOException readEx) {
+                                System.out.println("Could not read from file " + inFile);
+                                return false;
                             }
-                            // Create a new thread for the backup sorter
-                            Sorter backupSort = (Sorter)Class.forName(backupSortClass).getConstructor().newInstance();
-                            runSort(backupSort, timeout, backFail);
-                            // Check if backup sorter finished and run adjudicator results, exit if successful
-                            if (backupSort.didFinish() && SortedCheck.checkSorted(originalValues, backupSort.getSortedValues(), true)) {
-                                FileHelper.writeToFile(outFile, backupSort.getSortedValues());
-                                System.exit(0);
-                            }
-                        } catch (ReflectiveOperationException ex) {
-                            System.out.println("Could not create thread for " + backupSortClass);
                         }
+                        // Create a new task for the backup sorter
+                        IntSorter backupSort = createSorter(backupSortClass);
+                        backupSort.setValues(originalValues);
+                        // An adaptive backup may start from the failed attempt's nearly sorted result
+                        if (backupSort instanceof AdaptiveMergeSort) {
+                            ((AdaptiveMergeSort)backupSort).setHint(lastResult);
+                        }
+                        runSort(backupSort, backupTimeout, backFail, originalValues.length);
+                        if (backupSort instanceof AdaptiveMergeSort && ((AdaptiveMergeSort)backupSort).isHintUsed()) {
+                            System.out.println("Backup sorter resumed from the failed attempt's result");
+                        }
+                        lastResult = backupSort.getSortedInts();
+                        // Check if backup sorter finished and run adjudicator results, return if successful
+                        if (acceptAndWrite(backupSort, "backup", outFile)) {
+                            return true;
+                        }
+                    } catch (ReflectiveOperationException ex) {
+                        System.out.println("Could not create thread for " + backupSortClass);
                     }
-                    // All backups failed. Print failure message and delete output file.
-                    System.out.println("All backup sorters failed.");
-                    (new File(outFile)).delete();
+                }
+                // All backups failed. Print failure message and delete output file.
+                System.out.println("All backup sorters failed.");
+                (new File(outFile)).delete();
+            } catch (IOException ex) {
+                System.out.println("Could not write to file " + outFile);
+            } finally {
+                checkpoint.close();
+            }
+        } catch (IOException ex) {
+            System.out.println("Could not write to file " + outFile + ": " + ex.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Creates an <code>IntSorter</code> of the named class and applies
+     * the command line settings that concern it.  Constructors are
+     * looked up once per class and shared by all jobs
+     * @param className name of an <code>IntSorter</code> subclass
+     * @return the new sorter
+     * @throws ReflectiveOperationException if the sorter cannot be created
+     */
+    private IntSorter createSorter(String className) throws ReflectiveOperationException {
+        Constructor<? extends IntSorter> constructor = constructors.get(className);
+        if (constructor == null) {
+            constructor = Class.forName(className).asSubclass(IntSorter.class).getConstructor();
+            constructors.put(className, constructor);
+        }
+        IntSorter sorter = constructor.newInstance();
+        if (sorter instanceof ParallelMergeSort) {
+            ((ParallelMergeSort)sorter).setParallelism(parallelism);
+        }
+        return sorter;
+    }
+
+    /**
+     * Adjudicates the result of a sorter that has run, if it finished,
+     * and records the attempt in <code>SortMetrics</code>
+     * @param sorter sorter that has run
+     * @param role role of the sorter in the recovery block
+     * @return true if the sorter finished and its result is accepted
+     */
+    private boolean accept(IntSorter sorter, String role) {
+        return accept(sorter, role, -1, 0);
+    }
+
+    /**
+     * Adjudicates the result of a sorter that has run, if it finished,
+     * against a part of the input known by its count and multiset
+     * hash, and records the attempt in <code>SortMetrics</code>
+     * @param sorter sorter that has run
+     * @param role role of the sorter in the recovery block
+     * @param count number of values the sorter was given, or -1 to
+     *              adjudicate against the whole input
+     * @param hash <code>multisetHash</code> of the values it was given
+     * @return true if the sorter finished and its result is accepted
+     */
+    private boolean accept(IntSorter sorter, String role, long count, long hash) {
+        Boolean accepted = null;
+        long start = System.nanoTime();
+        if (sorter.didFinish()) {
+            accepted = count < 0 ? adjudicate(sorter.getSortedInts())
+                    : SortedCheck.checkSorted(count, hash, sorter.getSortedInts(), true);
+        }
+        long elapsed = System.nanoTime() - start;
+        SortMetrics.getInstance().record(this, sorter, role, elapsed, accepted);
+        return accepted != null && accepted;
+    }
+
+    /**
+     * Adjudicates the sorted store of an <code>OffHeapSorter</code> that
+     * has run, if it finished, against the count and multiset hash of
+     * the input, or against the records if records are sorted, and
+     * records the attempt in <code>SortMetrics</code>
+     * @param sorter sorter that has run
+     * @param role role of the sorter in the recovery block
+     * @param count number of values the sorter was given
+     * @param hash <code>multisetHash</code> of the values it was given
+     * @return true if the sorter finished and its result is accepted
+     */
+    private boolean accept(OffHeapSorter sorter, String role, long count, long hash) {
+        Boolean accepted = null;
+        long start = System.nanoTime();
+        if (sorter.didFinish()) {
+            accepted = (records != null) ? SortedCheck.checkRecords(records, sorter.getStore(), parallelism)
+                    : SortedCheck.checkSorted(count, hash, sorter.getStore(), parallelism);
+        }
+        long elapsed = System.nanoTime() - start;
+        SortMetrics.getInstance().record(this, sorter, role, elapsed, accepted);
+        return accepted != null && accepted;
+    }
+
+    /**
+     * Adjudicates the result of a sorter that has run and writes it to
+     * <code>outFile</code> if it is accepted.  With overlapped writing
+     * the result is written to a temporary file beside
+     * <code>outFile</code> while it is adjudicated, so the write is off
+     * the critical path; the file is then renamed over
+     * <code>outFile</code> in one atomic step if the result is accepted,
+     * and deleted otherwise, so <code>outFile</code> never holds a
+     * rejected or partial result.
+     * @param sorter sorter that has run
+     * @param role role of the sorter in the recovery block
+     * @param outFile output file to write sorted values to
+     * @return true if the result was accepted and written
+     * @throws IOException if cannot write to file
+     */
+    private boolean acceptAndWrite(IntSorter sorter, String role, String outFile) throws IOException {
+        if (!overlapWrite || !sorter.didFinish()) {
+            if (!accept(sorter, role)) return false;
+            FileHelper.writeIntsToFile(outFile, sorter.getSortedInts(), binaryOutput, true);
+            return true;
+        }
+
+        File target = new File(outFile).getAbsoluteFile();
+        final File temp = File.createTempFile(target.getName() + ".", ".tmp", target.getParentFile());
+        final int[] sorted = sorter.getSortedInts();
+        Future<?> write = SortExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    FileHelper.writeIntsToFile(temp.getPath(), sorted, binaryOutput, true);
                 } catch (IOException ex) {
-                    System.out.println("Could not write to file " + outFile);
+                    throw new UncheckedIOException(ex);
                 }
+            }
+        });
+
+        boolean written = false;
+        try {
+            boolean accepted = accept(sorter, role);
+            write.get();
+            if (accepted) {
+                FileHelper.moveAtomically(temp, target);
+                written = true;
+            }
+            return accepted;
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof UncheckedIOException
+                    ? ((UncheckedIOException)ex.getCause()).getCause() : new IOException(ex.getCause());
+        } catch (InterruptedException ex) {
+            return false;
+        } finally {
+            if (!written) temp.delete();
+        }
+    }
+
+    /**
+     * Acceptance test for a sorter's result.  Binary input carries the
+     * count and multiset hash of its values in its header, so the
+     * original values need not be rescanned; text input is checked
+     * against <code>originalValues</code>.  A partial sort is checked
+     * to hold the values at the selected ranks.
+     * @param sorted values produced by a sorter
+     * @return true if <code>sorted</code> is accepted, false otherwise
+     */
+    private boolean adjudicate(int[] sorted) {
+        if (selectionRanks != null) {
+            return SortedCheck.checkSelection(originalValues, selectionRanks, sorted);
+        }
+        if (inputHeader != null) {
+            return SortedCheck.checkSorted(inputHeader.count, inputHeader.hash, sorted, true);
+        }
+        return SortedCheck.checkSorted(originalValues, sorted, true, parallelism);
+    }
+
+    /**
+     * Runs the recovery block concurrently.  The primary and every backup
+     * start together on their own copy of <code>originalValues</code>,
+     * each under its own watchdog, and each result is adjudicated as soon
+     * as its sorter finishes.  The first accepted result is written and
+     * the remaining sorters are stopped.  Sorters earlier in the list
+     * (the primary first) have priority: once a result is accepted, any
+     * still running sorter of higher priority is given up to
+     * <code>grace</code> milliseconds to produce an accepted result of
+     * its own, which is then preferred.  Sorters still running
+     * <code>CANCEL_WAIT</code> milliseconds past the timeout are
+     * abandoned, as in <code>runSort</code>.
+     * @param outFile output file to write sorted values to
+     * @param primFail failure probability of primary sorter
+     * @param backFail failure probability of backup sorters
+     * @param timeout max time to allow for each sorter
+     * @param grace milliseconds to wait for a higher priority result
+     * @return true if a result was accepted and written, false otherwise
+     * @throws IOException if cannot write to file
+     */
+    private boolean sortConcurrent(String outFile, Double primFail, Double backFail,
+                                   Integer timeout, int grace) throws IOException {
+        String[] sortClasses = new String[backupSortClasses.length + 1];
+        sortClasses[0] = primarySortClass;
+        System.arraycopy(backupSortClasses, 0, sortClasses, 1, backupSortClasses.length);
+
+        final BlockingQueue<Integer> finished = new LinkedBlockingQueue<Integer>();
+        final IntSorter[] sorters = new IntSorter[sortClasses.length];
+        final boolean[] accepted = new boolean[sortClasses.length];
+        boolean[] done = new boolean[sortClasses.length];
+        ScheduledFuture<?>[] watchdogs = new ScheduledFuture<?>[sortClasses.length];
+
+        for (int i = 0; i < sortClasses.length; i++) {
+            try {
+                sorters[i] = createSorter(sortClasses[i]);
+            } catch (ReflectiveOperationException ex) {
+                System.out.println("Could not create thread for " + sortClasses[i]);
+                done[i] = true;
+                continue;
+            }
+            sorters[i].setValues(originalValues);
+            sorters[i].setFailureProbability(i == 0 ? primFail : backFail);
+        }
+        for (int i = 0; i < sortClasses.length; i++) {
+            if (sorters[i] == null) continue;
+            final int index = i;
+            // Run each sorter as a task that adjudicates its result as soon as it ends
+            watchdogs[i] = SortExecutor.watch(sorters[i], timeout);
+            SortExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sorters[index].run();
+                        accepted[index] = accept(sorters[index], index == 0 ? "primary" : "backup");
+                    } finally {
+                        finished.add(index);
+                    }
+                }
+            });
+        }
+
+        // Sorters stuck outside their cancellation checks are abandoned, as in runSort
+        long abandonDeadline = System.currentTimeMillis() + timeout + CANCEL_WAIT;
+        int winner = -1;
+        long graceDeadline = Long.MAX_VALUE;
+        try {
+            while (true) {
+                // Stop once no unfinished sorter could replace the current winner
+                int limit = (winner < 0) ? sortClasses.length : winner;
+                boolean waiting = false;
+                for (int i = 0; i < limit; i++) {
+                    if (!done[i]) waiting = true;
+                }
+                if (!waiting) break;
+
+                long wait = Math.min(graceDeadline, abandonDeadline) - System.currentTimeMillis();
+                Integer index = (wait > 0) ? finished.poll(wait, TimeUnit.MILLISECONDS) : null;
+                if (index == null) {
+                    if (winner < 0) System.out.println("Sorter did not stop after cancel, abandoning it");
+                    break;
+                }
+                done[index] = true;
+                if (!accepted[index]) {
+                    if (index == 0) System.out.println("Primary sorter failed");
+                } else if (winner < 0 || index < winner) {
+                    if (winner < 0) graceDeadline = System.currentTimeMillis() + grace;
+                    winner = index;
+                }
+            }
+        } catch (InterruptedException e) {}
+
+        // Stop every sorter still running
+        for (int i = 0; i < sorters.length; i++) {
+            if (sorters[i] == null) continue;
+            watchdogs[i].cancel(false);
+            if (!done[i]) sorters[i].cancel();
+        }
+
+        if (winner >= 0) {
+            FileHelper.writeIntsToFile(outFile, sorters[winner].getSortedInts(), binaryOutput, true);
+            return true;
+        }
+        // All sorters failed. Print failure message and delete output file.
+        System.out.println("All backup sorters failed.");
+        (new File(outFile)).delete();
+        return false;
+    }
+
+    /**
+     * Runs the recovery block on new values only and merges them into a
+     * previous sorted output, so the work of a run grows with the new
+     * values rather than with all values sorted so far.  The input file
+     * holds only the new values.  They are sorted in memory by the
+     * primary and backups in turn and adjudicated as usual, and the
+     * accepted result is merged with the streamed previous output by an
+     * <code>IncrementalMerge</code>, adjudicated as it is written.  The
+     * merge goes to a temporary file renamed over <code>outFile</code>
+     * once accepted, so <code>outFile</code> may be the previous output
+     * itself; a rejected merge is retried, once per backup.  The
+     * previous output is never deleted, and a missing one is taken as
+     * empty so the first run can start the series.  The cost model is
+     * fitted to the merge by the exact count of values it wrote.
+     * @param previousFile previous sorted output
+     * @param inFile input file with the new values
+     * @param outFile output file to write all sorted values to
+     * @param primFail failure probability of primary sorter and first merge
+     * @param backFail failure probability of backup sorters and merge retries
+     * @param timeout max time to allow for each sorter and each merge
+     * @return true if a merge was accepted and written, false otherwise
+     * @throws IOException if cannot write to file
+     */
+    private boolean sortIncremental(String previousFile, String inFile, String outFile, Double primFail,
+                                    Double backFail, Integer timeout) throws IOException {
+        boolean bootstrap = !new File(previousFile).exists();
+        int n = originalValues.length;
+        int[] delta = null;
+
+        // Sort the new values; sorters are given copies, so no checkpoint is needed
+        for (int i = 0; i <= backupSortClasses.length && delta == null; i++) {
+            String sortClass = i == 0 ? primarySortClass : backupSortClasses[i - 1];
+            long attemptTimeout = attemptTimeout(sortClass, n, timeout);
+            if (attemptTimeout < 0) continue;
+            try {
+                IntSorter sorter = createSorter(sortClass);
+                sorter.setValues(originalValues);
+                runSort(sorter, attemptTimeout, i == 0 ? primFail : backFail, n);
+                if (accept(sorter, i == 0 ? "primary" : "backup")) {
+                    delta = sorter.getSortedInts();
+                }
+            } catch (ReflectiveOperationException ex) {
+                System.out.println("Could not create thread for " + sortClass);
+            }
+            if (delta == null && i == 0) System.out.println("Primary sorter failed");
+        }
+
+        File target = new File(outFile).getAbsoluteFile();
+        if (delta != null) {
+            // Merge into the previous output, retrying only the merge if it is rejected
+            long total = n;
+            try {
+                if (!bootstrap) total += previousCount(previousFile);
             } catch (IOException ex) {
-                System.out.println("Could not read from file " + inFile);
+                System.out.println("Could not read from file " + previousFile);
+                return false;
+            }
+            for (int attempt = 0; attempt <= backupSortClasses.length; attempt++) {
+                long mergeTimeout = attemptTimeout("IncrementalMerge", total, timeout);
+                if (mergeTimeout < 0) break;
+                File temp = File.createTempFile(target.getName() + ".", ".tmp", target.getParentFile());
+                try {
+                    IncrementalMerge merge = new IncrementalMerge();
+                    merge.setFiles(bootstrap ? null : previousFile, temp.getPath(), binaryOutput);
+                    merge.setDelta(delta);
+                    boolean ended = runSort(merge, mergeTimeout, attempt == 0 ? primFail : backFail);
+                    if (merge.didFinish()) total = merge.getCount();
+                    if (ended && costModel != null) costModel.record(merge, merge.getCount());
+                    // The streaming adjudicator runs inside the merge, so its time is part of the merge
+                    Boolean accepted = merge.didFinish() ? merge.isAccepted() : null;
+                    SortMetrics.getInstance().record(this, merge, "merge", 0, accepted);
+                    if (accepted != null && accepted) {
+                        FileHelper.moveAtomically(temp, target);
+                        return true;
+                    }
+                } finally {
+                    temp.delete();
+                }
+                System.out.println("Merge failed" + (attempt < backupSortClasses.length ? ", retrying" : ""));
+            }
+        }
+        // The new values or every merge failed. Delete the output file unless it is the previous output.
+        System.out.println("All backup sorters failed.");
+        if (!target.equals(new File(previousFile).getAbsoluteFile())) target.delete();
+        return false;
+    }
+
+    /**
+     * Returns the number of values in a previous sorted output, to time
+     * out its merge before the exact count is known: the count in its
+     * header if it is binary, otherwise an upper bound from its size,
+     * as every text value takes at least two bytes, which can only
+     * lengthen the timeout
+     */
+    private static long previousCount(String previousFile) throws IOException {
+        if (BinaryIntFile.isBinary(previousFile)) return BinaryIntFile.readHeader(previousFile).count;
+        return new File(previousFile).length() / 2;
+    }
+
+    /**
+     * Runs the recovery block on values held in an
+     * <code>OffHeapStore</code> rather than a Java array, so the input
+     * may hold more than 2^31 values, or 64 bit values with
+     * <code>--wide</code>.  The primary and backups are
+     * <code>OffHeapSorter</code>s: by default a parallel
+     * <code>OffHeapRadixSort</code> then an in-place
+     * <code>OffHeapHeapSort</code>.  The loaded store is the checkpoint:
+     * every attempt sorts its own copy of it, and each result is
+     * accepted against the count and multiset hash of the input, taken
+     * from the header of binary input or computed once when loaded.
+     * With <code>--records</code> the input is a file of key and payload
+     * lines: the store holds one packed key and line index per record,
+     * results are accepted by <code>SortedCheck.checkRecords</code>, and
+     * the lines are written in the accepted order.
+     * @param inFile input file with values to sort
+     * @param outFile output file to write sorted values to
+     * @param primFail failure probability of primary sorter
+     * @param backFail failure probability of backup sorters
+     * @param timeout max time to allow for each sorter
+     * @param options parsed command line arguments
+     * @return true if a result was accepted and written, false otherwise
+     */
+    private boolean sortOffHeap(String inFile, String outFile, Double primFail, Double backFail,
+                                Integer timeout, Options options) {
+        boolean wide = options.has("wide") || options.has("records");
+        if (wide && binaryOutput) {
+            System.out.println("Binary files hold int values, use a text outFile with --wide or --records");
+            return false;
+        }
+        String[] sortClasses = new String[] { options.getString("primary", "OffHeapRadixSort"), "OffHeapHeapSort" };
+        if (options.has("backups")) {
+            sortClasses = Arrays.copyOf(sortClasses, backupSortClasses.length + 1);
+            System.arraycopy(backupSortClasses, 0, sortClasses, 1, backupSortClasses.length);
+        }
+
+        OffHeapStore original = null;
+        OffHeapStore work = null;
+        List<OffHeapStore> abandoned = new ArrayList<OffHeapStore>();
+        try {
+            // Load the input once, into files rather than memory if asked to
+            boolean mapped = options.getString("checkpoint", "memory").equals("mapped");
+            long hash = 0;
+            if (options.has("records")) {
+                records = RecordFile.read(inFile);
+                original = records.toStore(mapped);
+            } else {
+                original = OffHeapStore.load(inFile, wide, mapped);
+                hash = BinaryIntFile.isBinary(inFile) ? BinaryIntFile.readHeader(inFile).hash
+                        : SortedCheck.multisetHash(original, parallelism);
+            }
+            long n = original.size();
+            work = original.createLike();
+
+            for (int i = 0; i < sortClasses.length; i++) {
+                long attemptTimeout = attemptTimeout(sortClasses[i], n, timeout);
+                if (attemptTimeout < 0) continue;
+                try {
+                    Class<?> sortClass = Class.forName(sortClasses[i]);
+                    if (!OffHeapSorter.class.isAssignableFrom(sortClass)) {
+                        System.out.println(sortClasses[i] + " is not an OffHeapSorter");
+                        continue;
+                    }
+                    OffHeapSorter sorter = sortClass.asSubclass(OffHeapSorter.class).getConstructor().newInstance();
+                    sorter.setParallelism(parallelism);
+
+                    // Every attempt starts from a fresh copy of the input
+                    original.copyTo(work);
+                    sorter.setStore(work);
+                    if (!runSort(sorter, attemptTimeout, i == 0 ? primFail : backFail, n)) {
+                        // An abandoned sorter may still write to its store, so it is released last
+                        abandoned.add(work);
+                        work = original.createLike();
+                    } else if (accept(sorter, i == 0 ? "primary" : "backup", n, hash)) {
+                        if (records != null) records.write(outFile, work);
+                        else work.write(outFile, binaryOutput, true);
+                        return true;
+                    }
+                } catch (ReflectiveOperationException ex) {
+                    System.out.println("Could not create thread for " + sortClasses[i]);
+                }
+                if (i == 0) System.out.println("Primary sorter failed");
+            }
+            // All backups failed. Print failure message and delete output file.
+            System.out.println("All backup sorters failed.");
+            (new File(outFile)).delete();
+        } catch (IOException ex) {
+            System.out.println("Could not sort " + inFile + " to " + outFile + ": " + ex.getMessage());
+        } finally {
+            try { original.close(); } catch (NullPointerException ex) {}
+            try { work.close(); } catch (NullPointerException ex) {}
+            // Sorters still using these stores fail on their next access once closed
+            for (OffHeapStore store : abandoned) store.close();
+        }
+        return false;
+    }
+
+    /**
+     * Runs the recovery block on a partial sort, which selects only the
+     * smallest or largest k values, or the values at the given
+     * percentiles, and writes them in ascending order.  The primary and
+     * backups are <code>SelectionSorter</code>s: by default a bounded
+     * <code>HeapSelect</code> then an <code>IntroSelect</code> for top-k,
+     * and the reverse for percentiles, whose ranks are far from both ends.
+     * Each result is accepted by <code>SortedCheck.checkSelection</code>.
+     * Selection sorters never modify <code>originalValues</code>, so no
+     * checkpoint is needed between alternates.
+     * @param outFile output file to write selected values to
+     * @param primFail failure probability of primary sorter
+     * @param backFail failure probability of backup sorters
+     * @param timeout max time to allow for each sorter
+     * @param options parsed command line arguments giving the selection
+     * @return true if a result was accepted and written, false otherwise
+     * @throws IOException if cannot write to file
+     */
+    private boolean sortSelection(String outFile, Double primFail, Double backFail, Integer timeout,
+                                  Options options) throws IOException {
+        int n = originalValues.length;
+        String[] sortClasses;
+        if (options.has("percentiles")) {
+            String[] values = options.getString("percentiles", "50").split(",");
+            double[] percentiles = new double[values.length];
+            for (int i = 0; i < values.length; i++) percentiles[i] = Double.parseDouble(values[i]);
+            selectionRanks = SelectionSorter.percentileRanks(n, percentiles);
+            sortClasses = new String[] { "IntroSelect", "HeapSelect" };
+        } else {
+            selectionRanks = options.has("smallest")
+                    ? SelectionSorter.smallestRanks(n, options.getInt("smallest", 1))
+                    : SelectionSorter.largestRanks(n, options.getInt("largest", 1));
+            sortClasses = new String[] { "HeapSelect", "IntroSelect" };
+        }
+        if (options.has("primary")) sortClasses[0] = options.getString("primary", sortClasses[0]);
+        if (options.has("backups")) {
+            String[] backups = options.getString("backups", "").split(",");
+            sortClasses = Arrays.copyOf(sortClasses, backups.length + 1);
+            System.arraycopy(backups, 0, sortClasses, 1, backups.length);
+        }
+
+        for (int i = 0; i < sortClasses.length; i++) {
+            long attemptTimeout = attemptTimeout(sortClasses[i], n, timeout);
+            if (attemptTimeout < 0) continue;
+            try {
+                IntSorter sorter = createSorter(sortClasses[i]);
+                if (!(sorter instanceof SelectionSorter)) {
+                    System.out.println(sortClasses[i] + " is not a SelectionSorter");
+                    continue;
+                }
+                ((SelectionSorter)sorter).setSelection(originalValues, selectionRanks);
+                runSort(sorter, attemptTimeout, i == 0 ? primFail : backFail, n);
+                if (acceptAndWrite(sorter, i == 0 ? "primary" : "backup", outFile)) {
+                    return true;
+                }
+            } catch (ReflectiveOperationException ex) {
+                System.out.println("Could not create thread for " + sortClasses[i]);
+            }
+            if (i == 0) System.out.println("Primary sorter failed");
+        }
+        // All backups failed. Print failure message and delete output file.
+        System.out.println("All backup sorters failed.");
+        (new File(outFile)).delete();
+        return false;
+    }
+
+    /**
+     * Runs the recovery block on partitions of the input.  The input is
+     * split into <code>chunks</code> contiguous chunks and each chunk is
+     * sorted in parallel under a recovery block of its own: the primary
+     * sorts it, the result is adjudicated against the count and multiset
+     * hash of the chunk, and the backups are tried in turn on failure.
+     * A fault therefore costs the work of one chunk rather than of the
+     * whole input.  The accepted chunks are then combined by a
+     * <code>KWayMerge</code> adjudicated against the whole input; a
+     * rejected merge is retried, once per backup, from the same chunks.
+     * @param outFile output file to write sorted values to
+     * @param primFail failure probability of primary sorters and first merge
+     * @param backFail failure probability of backup sorters and merge retries
+     * @param timeout max time to allow for each sorter and each merge
+     * @param chunks number of chunks to split the input into
+     * @return true if a merge was accepted and written, false otherwise
+     * @throws IOException if cannot write to file
+     */
+    private boolean sortChunked(String outFile, final Double primFail, final Double backFail,
+                                final Integer timeout, int chunks) throws IOException {
+        final int n = originalValues.length;
+        chunks = Math.max(1, Math.min(chunks, n));
+        final int[][] sortedChunks = new int[chunks][];
+        final double slowdown = Math.ceil((double)chunks / Runtime.getRuntime().availableProcessors());
+        Future<?>[] tasks = new Future<?>[chunks];
+
+        for (int c = 0; c < chunks; c++) {
+            final int index = c;
+            final int from = (int)((long)n * c / chunks);
+            final int to = (int)((long)n * (c + 1) / chunks);
+            tasks[c] = SortExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    sortedChunks[index] = sortChunk(index, from, to, primFail, backFail, timeout, slowdown);
+                }
+            });
+        }
+        boolean chunksSorted = true;
+        for (int c = 0; c < chunks; c++) {
+            try {
+                tasks[c].get();
+            } catch (ExecutionException e) {
+                System.out.println("Chunk " + c + " failed: " + e.getCause());
+            } catch (InterruptedException e) {}
+            if (sortedChunks[c] == null) chunksSorted = false;
+        }
+
+        if (chunksSorted) {
+            // Merge the accepted chunks, retrying only the merge if it is rejected
+            for (int attempt = 0; attempt <= backupSortClasses.length; attempt++) {
+                long mergeTimeout = attemptTimeout("KWayMerge", n, timeout);
+                if (mergeTimeout < 0) break;
+                KWayMerge merge = new KWayMerge();
+                merge.setRuns(sortedChunks);
+                runSort(merge, mergeTimeout, attempt == 0 ? primFail : backFail, n);
+                if (acceptAndWrite(merge, "merge", outFile)) {
+                    return true;
+                }
+                System.out.println("Merge failed" + (attempt < backupSortClasses.length ? ", retrying" : ""));
             }
         }
+        // A chunk or every merge failed. Print failure message and delete output file.
+        System.out.println("All backup sorters failed.");
+        (new File(outFile)).delete();
+        return false;
     }
 
     /**
-     * Runs the given <code>Sorter</code> on the global array
-     * <code>originalValues</code> with a timeout of <code>timeout</code>
+     * Runs the recovery block of one chunk, each alternate as its own
+     * task under <code>runSort</code>
+     * @param index number of the chunk
+     * @param from index of the first value of the chunk
+     * @param to index after the last value of the chunk
+     * @param primFail failure probability of the primary sorter
+     * @param backFail failure probability of the backup sorters
+     * @param timeout max time to allow for each sorter
+     * @param slowdown factor by which chunks sharing the processors slow each other
+     * @return the accepted sorted chunk, null if every sorter failed
+     */
+    private int[] sortChunk(int index, int from, int to, Double primFail, Double backFail, Integer timeout,
+                            double slowdown) {
+        int[] buffer = new int[to - from];
+        long hash = SortedCheck.multisetHash(originalValues, from, to);
+
+        for (int i = 0; i <= backupSortClasses.length; i++) {
+            String sortClass = i == 0 ? primarySortClass : backupSortClasses[i - 1];
+            long attemptTimeout = attemptTimeout(sortClass, buffer.length, timeout, slowdown);
+            if (attemptTimeout < 0) continue;
+            try {
+                IntSorter sorter = createSorter(sortClass);
+                // Chunks already run in parallel, so a chunk sorter uses one thread
+                if (sorter instanceof ParallelMergeSort) ((ParallelMergeSort)sorter).setParallelism(1);
+                sorter.setValues(originalValues, from, buffer);
+
+                // The sorter runs as its own task, so one stuck outside its cancel checks can be abandoned
+                boolean ended = runSort(sorter, attemptTimeout, i == 0 ? primFail : backFail);
+                if (ended && costModel != null) costModel.record(sorter, buffer.length, slowdown);
+                if (accept(sorter, i == 0 ? "primary" : "backup", buffer.length, hash) && ended) {
+                    return sorter.getSortedInts();
+                }
+                // An abandoned sorter may still write to its buffer
+                if (!ended) buffer = new int[to - from];
+            } catch (ReflectiveOperationException ex) {
+                System.out.println("Could not create thread for " + sortClass);
+            }
+            if (i == 0) System.out.println("Primary sorter failed on chunk " + index);
+        }
+        return null;
+    }
+
+    /**
+     * Runs the recovery block out of core.  Every attempt is an
+     * <code>ExternalMergeSort</code> that streams the input into sorted
+     * runs and merges them into <code>outFile</code>, using the primary
+     * or backup sorter class to sort its in-memory chunks.  Attempts are
+     * accepted by the streaming adjudicator of <code>ExternalMergeSort</code>.
+     * @param inFile input file with values to sort
+     * @param outFile output file to write sorted values to
+     * @param primFail failure probability of primary attempt
+     * @param backFail failure probability of backup attempts
+     * @param timeout max time to allow for each attempt
+     * @param memoryBudget bytes of heap each attempt may use, 0 for default
+     * @return true if an attempt was accepted, false otherwise
+     */
+    private boolean sortExternal(String inFile, String outFile, Double primFail, Double backFail,
+                                 Integer timeout, long memoryBudget) {
+        String[] chunkSortClasses = new String[backupSortClasses.length + 1];
+        chunkSortClasses[0] = primarySortClass;
+        System.arraycopy(backupSortClasses, 0, chunkSortClasses, 1, backupSortClasses.length);
+
+        for (int i = 0; i < chunkSortClasses.length; i++) {
+            ExternalMergeSort sorter = new ExternalMergeSort();
+            sorter.setFiles(inFile, outFile, binaryOutput);
+            sorter.setChunkSortClass(chunkSortClasses[i]);
+            if (memoryBudget > 0) sorter.setMemoryBudget(memoryBudget);
+
+            runSort(sorter, timeout, i == 0 ? primFail : backFail);
+            // The streaming adjudicator runs inside the attempt, so its time is part of the sort
+            SortMetrics.getInstance().record(this, sorter, i == 0 ? "primary" : "backup", 0,
+                    sorter.didFinish() ? sorter.isAccepted() : null);
+            if (sorter.didFinish() && sorter.isAccepted()) {
+                return true;
+            }
+            if (i == 0) System.out.println("Primary sorter failed");
+        }
+        // All backups failed. Print failure message and delete output file.
+        System.out.println("All backup sorters failed.");
+        (new File(outFile)).delete();
+        return false;
+    }
+
+    /**
+     * Runs the given <code>Sorter</code> on the values it has been
+     * given with a timeout of <code>timeout</code>
      * and a probability of memory access error of <code>failureProb</code>.
-     * @param sorter <code>Sorter</code> to sort <code>originalValues</code> with
+     * The sorter runs on the shared executor and the timeout is enforced
+     * by a <code>Watchdog</code> on the shared scheduler, which cancels the
+     * sorter cooperatively.  A sorter still running <code>CANCEL_WAIT</code>
+     * milliseconds past its timeout is abandoned.
+     * @param sorter <code>Sorter</code> to run
      * @param timeout Integer representing max time to allow for sorting
      * @param failureProb Probability of each memory access failing
+     * @return true if the sorter ran to its end or to its timeout,
+     *         false if it failed with an exception or was abandoned
      */
-    private static void runSort(Sorter sorter, Integer timeout, Double failureProb) {
-        Watchdog w = new Watchdog(sorter);
-        Timer t = new Timer();
-
-        sorter.setValues(originalValues);
+    private static boolean runSort(Sorter sorter, long timeout, Double failureProb) {
         sorter.setFailureProbability(failureProb);
-        t.schedule(w, timeout);
-        sorter.start();
+        Future<?> task = SortExecutor.submit(sorter);
+        ScheduledFuture<?> watchdog = SortExecutor.watch(sorter, timeout);
+        boolean ended = false;
         try {
-            sorter.join();
-            t.cancel();
+            task.get(timeout + CANCEL_WAIT, TimeUnit.MILLISECONDS);
+            ended = true;
+        } catch (TimeoutException e) {
+            // Sorter is stuck outside its cancellation checks, e.g. in native code
+            sorter.cancel();
+            System.out.println("Sorter did not stop after cancel, abandoning it");
+        } catch (ExecutionException e) {
+            System.out.println("Sorter failed: " + e.getCause());
         } catch (InterruptedException e) {}
+        watchdog.cancel(false);
+        return ended;
+    }
+
+    /**
+     * Runs a sorter of <code>n</code> values as <code>runSort</code>
+     * does, and fits the cost model to the run if timeouts are adaptive
+     */
+    private boolean runSort(Sorter sorter, long timeout, Double failureProb, long n) {
+        boolean ended = runSort(sorter, timeout, failureProb);
+        if (ended && costModel != null) {
+            costModel.record(sorter, n);
+        }
+        return ended;
+    }
+
+    /**
+     * Returns the timeout of an attempt of a sorter class on
+     * <code>n</code> values.  With adaptive timeouts this is the
+     * predicted run time times the multiplier, but no less than
+     * <code>MIN_TIMEOUT</code>, or the fixed timeout while the class
+     * has no runs in the model.  With a deadline the timeout is cut to
+     * the time remaining, and an attempt predicted not to fit in it is
+     * skipped.
+     * @param sortClass name of the sorter class
+     * @param n number of values to sort
+     * @param timeout fixed timeout in milliseconds
+     * @return timeout in milliseconds, -1 to skip the attempt
+     */
+    private long attemptTimeout(String sortClass, long n, long timeout) {
+        return attemptTimeout(sortClass, n, timeout, 1);
+    }
+
+    /**
+     * Returns the timeout of an attempt that runs alongside others and
+     * is predicted to take <code>slowdown</code> times as long as alone
+     */
+    private long attemptTimeout(String sortClass, long n, long timeout, double slowdown) {
+        double predicted = (costModel != null) ? costModel.predictMillis(sortClass, n) * slowdown : -1;
+        if (predicted >= 0) {
+            timeout = Math.max(MIN_TIMEOUT, (long)Math.ceil(predicted * timeoutMultiplier));
+        }
+        if (deadline != 0) {
+            long remaining = (deadline - System.nanoTime()) / 1000000;
+            if (remaining <= 0) {
+                System.out.println("Skipping " + sortClass + ", the deadline has passed");
+                return -1;
+            }
+            if (predicted > remaining) {
+                System.out.println("Skipping " + sortClass + ", predicted " + Math.round(predicted)
+                        + " ms with " + remaining + " ms left before the deadline");
+                return -1;
+            }
+            timeout = Math.min(timeout, remaining);
+        }
+        return timeout;
     }
     
     /**
@@ -122,13 +1021,51 @@ public class DataSorter {
      */
     private static void printSyntax() {
     	StringBuilder sb = new StringBuilder();
-        sb.append("\tjava DataSorter <inFile> <outFile> <primFail> <backFail> <timeout> \n\n")
+        sb.append("\tjava DataSorter <inFile> <outFile> <primFail> <backFail> <timeout> [options]\n\n")
                 .append("Where:\n\n")
                 .append("\tinFile = input file with values to sort\n")
                 .append("\toutFile = output file to write sorted values to\n")
                 .append("\tprimFail = failure probability of primary sorting routine\n")
                 .append("\tbackFail = failure probability of backup sorting routine\n")
-                .append("\ttimeout = number of seconds to wait for each sorting routine\n");
+                .append("\ttimeout = number of seconds to wait for each sorting routine\n\n")
+                .append("Options:\n\n")
+                .append("\t--binary = write outFile in the binary format (default for .bin filenames)\n")
+                .append("\t--primary=<class> = primary sorter (default DaryHeapSort), e.g. RadixSort or CountingSort\n")
+                .append("\t--backups=<class,...> = backup sorters, run in the given order (default NativeSort);\n")
+                .append("\t                         AdaptiveMergeSort resumes from the failed attempt's result\n")
+                .append("\t--parallelism=<n> = threads used by ParallelMergeSort\n")
+                .append("\t--auto = choose the primary and backups from the range, cardinality and\n")
+                .append("\t         presortedness of the input (--primary and --backups still win)\n")
+                .append("\t--checkpoint=<memory|mapped> = keep the input snapshot for backups off-heap\n")
+                .append("\t                                or in a memory-mapped temporary file\n")
+                .append("\t--concurrent = run the primary and all backups at once, first accepted result wins\n")
+                .append("\t--grace=<ms> = time a passing --concurrent result waits for a higher priority one\n")
+                .append("\t--chunks=<n> = split the input into n chunks, each sorted in parallel under its own\n")
+                .append("\t               recovery block, then merged; a failure only repeats its chunk or the merge\n")
+                .append("\t--incremental[=<file>] = inFile holds only new values; sort them and merge them into\n")
+                .append("\t                         the previous sorted output file (default outFile itself)\n")
+                .append("\t--smallest=<k> = select and write only the k smallest values, in ascending order\n")
+                .append("\t--largest=<k> = select and write only the k largest values, in ascending order\n")
+                .append("\t--percentiles=<p,...> = select and write only the values at these percentiles\n")
+                .append("\t                        (nearest rank), in ascending order\n")
+                .append("\t--offheap = hold the values outside the Java heap, indexed by long, for inputs of\n")
+                .append("\t            more than 2^31 values (default OffHeapRadixSort, then OffHeapHeapSort,\n")
+                .append("\t            or OffHeapNativeSort to sort int values natively without copies);\n")
+                .append("\t            with --checkpoint=mapped the values live in memory-mapped temporary files\n")
+                .append("\t--wide = sort 64 bit values off the heap (implies --offheap, text outFile only)\n")
+                .append("\t--records = inFile holds lines of an int key and a payload; sort the lines by key\n")
+                .append("\t              through packed key and line index values (implies --offheap)\n")
+                .append("\t--external = sort out of core with bounded memory, for inputs larger than the heap\n")
+                .append("\t--memory=<MB> = memory budget of each --external attempt\n")
+                .append("\t--overlap-write = write the output to a temporary file while it is adjudicated,\n")
+                .append("\t                  renamed over outFile once accepted and deleted if rejected\n")
+                .append("\t--adaptive-timeout[=<m>] = time out each attempt at m times (default 3) its run time\n")
+                .append("\t                           predicted from its input size by a cost model fitted to\n")
+                .append("\t                           past runs; the fixed timeout is used until a sorter has run\n")
+                .append("\t--cost-model=<file> = properties file of the cost model (default costmodel.properties)\n")
+                .append("\t--deadline=<ms> = overall time limit; attempts predicted not to fit are skipped\n")
+                .append("\t--metrics=<file> = append the time, memory accesses and outcome of every attempt\n")
+                .append("\t                   to a CSV file (totals are also exported over JMX)\n");
         System.out.println(sb.toString());	
     }
 
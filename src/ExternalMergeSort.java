@@ -0,0 +1,269 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Subclass of Sorter that sorts a file too large for the heap.
+ * The input file is read in chunks bounded by a memory budget, each
+ * chunk is sorted in memory by an <code>IntSorter</code> and written to
+ * a temporary run file, and the runs are then k-way merged with a
+ * primitive min-heap straight into the output file.
+ *
+ * The result is adjudicated while it is merged by a
+ * <code>StreamingSortedCheck</code>, which summarises the input as the
+ * chunks are read and checks the order and multiset of every value
+ * written, so the output never has to be read back.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class ExternalMergeSort extends Sorter {
+
+    private static final int MAX_FAN_IN = 256;                  // Runs merged in one pass
+    private static final int MIN_READ_BUFFER = 1 << 16;
+    private static final int MAX_READ_BUFFER = 1 << 24;
+
+    private String inFile;
+    private String outFile;
+    private boolean binaryOutput;
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;   // Bytes
+    private String chunkSortClass = "IntHeapSort";
+    private File tempDir;
+
+    private StreamingSortedCheck check;
+    private volatile Sorter chunkSorter;            // Sorter of the chunk being sorted
+
+    public void setFiles(String inFile, String outFile, boolean binaryOutput) {
+        this.inFile = inFile;
+        this.outFile = outFile;
+        this.binaryOutput = binaryOutput;
+    }
+    public void setMemoryBudget(long bytes) { this.memoryBudget = bytes; }
+    public void setChunkSortClass(String className) { this.chunkSortClass = className; }
+    public void setTempDir(File dir) { this.tempDir = dir; }
+
+    /**
+     * Cancels this sort along with the chunk sort in progress
+     */
+    @Override
+    public void cancel() {
+        super.cancel();
+        Sorter current = chunkSorter;
+        if (current != null) current.cancel();
+    }
+
+    /**
+     * Returns true if the streaming adjudicator accepted the output
+     */
+    public boolean isAccepted() { return check != null && check.isAccepted(); }
+
+    /**
+     * Sort the input file into the output file.  The values
+     * argument is ignored, the data never passes through
+     * <code>sortedValues</code>.
+     */
+    @Override
+    protected void sort(Integer[]... values) {
+        if (inFile == null || outFile == null) return;
+        List<File> runs = new ArrayList<File>();
+
+        try {
+            check = new StreamingSortedCheck(ascendingOrder);
+            if (!createRuns(runs)) return;
+
+            // Reduce the number of runs until they can be merged in one pass
+            while (runs.size() > MAX_FAN_IN) {
+                List<File> merged = new ArrayList<File>();
+                for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+                    List<File> group = runs.subList(i, Math.min(runs.size(), i + MAX_FAN_IN));
+                    File run = createRunFile();
+                    merged.add(run);
+                    merge(group, new IntStreamWriter(run.getPath(), true, false), null);
+                    for (File f : group) f.delete();
+                }
+                runs = merged;
+            }
+            merge(runs, new IntStreamWriter(outFile, binaryOutput, true), check);
+
+            // Sort complete. Set flag to true unless hardware failure
+            memHits++;
+            sortComplete = !virtualHardwareFailure();
+        } catch (IOException ex) {
+            System.out.println("External sort failed: " + ex.getMessage());
+        } catch (ReflectiveOperationException ex) {
+            System.out.println("Could not create chunk sorter " + chunkSortClass);
+        } finally {
+            for (File run : runs) run.delete();
+        }
+    }
+
+    /**
+     * Reads the input in chunks, sorts each chunk in memory and
+     * writes it to a new run file
+     * @param runs list to add the created run files to
+     * @return false if a chunk sorter failed
+     */
+    private boolean createRuns(List<File> runs) throws IOException, ReflectiveOperationException {
+        int chunkSize = (int)Math.max(1024, Math.min(Integer.MAX_VALUE - 8, memoryBudget / 8));
+        IntStreamReader reader = new IntStreamReader(inFile);
+
+        try {
+            int[] chunk = new int[Math.min(chunkSize, 1 << 20)];
+            while (true) {
+                checkCancelled();
+                // Fill the chunk, growing it up to the budget
+                int n = 0;
+                int read;
+                while (true) {
+                    if (n == chunk.length) {
+                        if (chunk.length >= chunkSize) break;
+                        chunk = Arrays.copyOf(chunk, (int)Math.min(chunkSize, chunk.length * 2L));
+                    }
+                    read = reader.read(chunk, n, chunk.length - n);
+                    if (read < 0) break;
+                    n += read;
+                }
+                if (n == 0) break;
+                check.addOriginal(chunk, 0, n);
+
+                int[] values = (n == chunk.length) ? chunk : Arrays.copyOf(chunk, n);
+                IntSorter sorter = (IntSorter)Class.forName(chunkSortClass).getConstructor().newInstance();
+                sorter.setFailureProbability(failureProbability);
+                chunkSorter = sorter;
+                if (isCancelled()) sorter.cancel();
+                try {
+                    sorter.sort(values);
+                } finally {
+                    chunkSorter = null;
+                }
+                memHits += sorter.memHits;
+                if (!sorter.didFinish()) return false;
+
+                File run = createRunFile();
+                runs.add(run);
+                IntStreamWriter writer = new IntStreamWriter(run.getPath(), true, false);
+                try {
+                    writer.write(values, 0, n);
+                } finally {
+                    writer.close();
+                }
+                if (n < chunk.length) break;
+            }
+        } finally {
+            reader.close();
+        }
+        return true;
+    }
+
+    private File createRunFile() throws IOException {
+        File run = File.createTempFile("run", ".bin", tempDir);
+        run.deleteOnExit();
+        return run;
+    }
+
+    /**
+     * Merges sorted run files into <code>out</code> using a min-heap
+     * of the current head value of every run
+     * @param runs Sorted run files
+     * @param out Writer for merged output, closed when done
+     * @param check Adjudicator fed every output value, may be null
+     */
+    private void merge(List<File> runs, IntStreamWriter out, StreamingSortedCheck check) throws IOException {
+        int k = runs.size();
+        int bufferBytes = (int)Math.max(MIN_READ_BUFFER, Math.min(MAX_READ_BUFFER, memoryBudget / (4L * (k + 1))));
+        IntStreamReader[] readers = new IntStreamReader[k];
+        int[][] batches = new int[k][];
+        int[] positions = new int[k];
+        int[] limits = new int[k];
+        int[] heapValues = new int[k];
+        int[] heapRuns = new int[k];
+        int size = 0;
+        long hits = 0;
+        long written = 0;
+
+        try {
+            for (int r = 0; r < k; r++) {
+                readers[r] = new IntStreamReader(runs.get(r).getPath(), bufferBytes);
+                batches[r] = new int[bufferBytes / 4];
+                if (refill(readers[r], batches[r], positions, limits, r)) {
+                    heapValues[size] = batches[r][positions[r]++];
+                    heapRuns[size] = r;
+                    size++;
+                }
+            }
+            for (int i = size/2 - 1; i >= 0; i--) {
+                hits += siftDown(heapValues, heapRuns, size, i);
+            }
+
+            while (size > 0) {
+                if ((++written & 0xFFF) == 0) checkCancelled();
+                int value = heapValues[0];
+                int run = heapRuns[0];
+                out.write(value);
+                if (check != null) check.addSorted(value);
+
+                if (positions[run] < limits[run] || refill(readers[run], batches[run], positions, limits, run)) {
+                    heapValues[0] = batches[run][positions[run]++];
+                } else {
+                    size--;
+                    heapValues[0] = heapValues[size];
+                    heapRuns[0] = heapRuns[size];
+                }
+                hits += 4 + siftDown(heapValues, heapRuns, size, 0);
+            }
+        } finally {
+            memHits += hits;
+            for (IntStreamReader reader : readers) {
+                if (reader != null) reader.close();
+            }
+            out.close();
+        }
+    }
+
+    private static boolean refill(IntStreamReader reader, int[] batch, int[] positions, int[] limits, int run) throws IOException {
+        int read = reader.read(batch, 0, batch.length);
+        positions[run] = 0;
+        limits[run] = Math.max(0, read);
+        return read > 0;
+    }
+
+    /**
+     * Restores the min-heap property below <code>root</code>
+     * @return number of memory accesses made
+     */
+    private static long siftDown(int[] values, int[] runs, int size, int root) {
+        int value = values[root];
+        int run = runs[root];
+        long hits = 2;
+        int child;
+        while ((child = 2*root + 1) < size) {
+            if (child + 1 < size && values[child + 1] < values[child]) child++;
+            if (values[child] >= value) break;
+            values[root] = values[child];
+            runs[root] = runs[child];
+            root = child;
+            hits += 6;
+        }
+        values[root] = value;
+        runs[root] = run;
+        return hits + 2;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        String NEW_LINE = System.getProperty("line.separator");
+
+        result.append(this.getClass().getName() + " Object {" + NEW_LINE);
+        result.append("Input file: " + inFile + NEW_LINE);
+        result.append("Output file: " + outFile + NEW_LINE);
+        result.append("Memory budget: " + memoryBudget + NEW_LINE);
+        result.append("Chunk sorter: " + chunkSortClass + NEW_LINE);
+        result.append("Failure probability: " + failureProbability + NEW_LINE);
+        result.append("Sort completed: " + sortComplete + NEW_LINE);
+        result.append("}");
+
+        return result.toString();
+    }
+}
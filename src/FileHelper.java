@@ -1,4 +1,7 @@
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
  * A helper class for reading from and writing to files
@@ -51,6 +54,94 @@ public class FileHelper {
         }
     }
 
+    /**
+     * Reads all integers from a file with the given filename straight
+     * into a primitive array.  Files in the binary format of
+     * <code>BinaryIntFile</code> are recognised by their magic number.
+     * Text files hold whitespace separated integers and are
+     * memory-mapped and parsed in parallel by <code>MappedIntReader</code>,
+     * so no intermediate <code>String</code> or boxed value is created
+     * per element, and the input may be one line or many.
+     * @param filename Name of file to read
+     * @return int[] of all values found
+     * @throws IOException if cannot read from file or a value is malformed
+     */
+    public static int[] readIntsFromFile(String filename) throws IOException {
+        if (BinaryIntFile.isBinary(filename)) {
+            return BinaryIntFile.read(filename);
+        }
+        return MappedIntReader.read(filename);
+    }
+
+    /**
+     * Writes all primitive values found in <code>values</code> to the
+     * file specified by <code>filename</code>. Values will be written
+     * to one single line and space separated, or in the binary format
+     * if <code>filename</code> has a binary extension
+     * @param filename File you wish to write to
+     * @param values Primitive values to write to file
+     * @throws IOException if cannot write to file
+     */
+    public static void writeIntsToFile(String filename, int[] values) throws IOException {
+        writeIntsToFile(filename, values, isBinaryName(filename), false);
+    }
+
+    /**
+     * Writes all primitive values found in <code>values</code> to the
+     * file specified by <code>filename</code>, either as space separated
+     * text or in the binary format of <code>BinaryIntFile</code>.  Text
+     * is formatted by an <code>IntStreamWriter</code> straight into a
+     * reused direct buffer, without a <code>String</code> per value
+     * @param filename File you wish to write to
+     * @param values Primitive values to write to file
+     * @param binary true to write the binary format, false for text
+     * @param sorted true if <code>values</code> are sorted, in which case
+     *               binary output is delta + varint encoded
+     * @throws IOException if cannot write to file
+     */
+    public static void writeIntsToFile(String filename, int[] values, boolean binary, boolean sorted) throws IOException {
+        if (binary) {
+            BinaryIntFile.write(filename, values, sorted);
+            return;
+        }
+
+        IntStreamWriter writer = null;
+
+        try {
+            writer = new IntStreamWriter(filename, false, false);
+            writer.write(values, 0, values.length);
+        } finally {
+            try { writer.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    /**
+     * Moves <code>source</code> over <code>target</code> in one atomic
+     * rename, so readers of <code>target</code> see either the old file
+     * or the complete new one.  Falls back to a plain replacing move on
+     * file systems that cannot rename atomically.
+     * @param source File to move, in the same directory as <code>target</code>
+     * @param target File to replace
+     * @throws IOException if the file cannot be moved
+     */
+    public static void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Determines whether a file should be written in the binary
+     * format based on its extension
+     * @param filename Name of file
+     * @return true if <code>filename</code> ends with <code>.bin</code>
+     */
+    public static boolean isBinaryName(String filename) {
+        return filename.endsWith(".bin");
+    }
+
     @Override
     public String toString() {
         return this.getClass().getName() + "Class Object";
@@ -0,0 +1,98 @@
+/**
+ * Subclass of SelectionSorter that selects with a bounded heap.  One
+ * pass over the input keeps the K smallest values seen in a max-heap
+ * of K values, where K is one more than the largest rank selected, so
+ * the whole selection costs O(n log K) time and O(K) memory.  When
+ * the ranks are nearer the top of the order the K largest values are
+ * kept instead, by heaping their bitwise complements, which reverses
+ * the order of every <code>int</code> without overflow.  The kept
+ * values are then heap sorted and the selected ranks read off.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class HeapSelect extends SelectionSorter {
+
+    private static final int CHECK_MASK = (1 << 12) - 1;        // Cancel checked every 4096 values
+
+    /**
+     * Select values using a bounded heap.
+     * Details about arguments can be found in <code>IntSorter</code>
+     */
+    @Override
+    protected void sort(int[]... values) {
+        if (values.length == 1) source = values[0];                                         memHits+=3;
+        if (source == null || ranks == null) return;                                        memHits+=2;
+        int n = source.length;
+        int m = ranks.length;
+        sortedInts = new int[m];
+        if (m == 0) {
+            sortComplete = !virtualHardwareFailure();
+            return;
+        }
+
+        // Keep whichever side of the order is smaller
+        int low = ranks[m - 1] + 1;
+        int high = n - ranks[0];
+        boolean complement = high < low;
+        int k = complement ? high : low;
+        int flip = complement ? -1 : 0;                                                     // x ^ -1 == ~x
+
+        // Fill the heap, then replace its maximum with every smaller value
+        int[] heap = new int[k];
+        for (int i = 0; i < k; i++) heap[i] = source[i] ^ flip;
+        long hits = 2L*k;
+        for (int i = k/2 - 1; i >= 0; i--) {
+            hits += siftDown(heap, i, k);
+        }
+        for (int i = k; i < n; i++) {
+            if ((i & CHECK_MASK) == 0) checkCancelled();
+            int value = source[i] ^ flip;
+            hits += 2;
+            if (value < heap[0]) {
+                heap[0] = value;
+                hits += 1 + siftDown(heap, 0, k);
+            }
+        }
+        memHits += hits;
+
+        // Heap sort the kept values into ascending order of the heap
+        hits = 0;
+        for (int end = k - 1; end > 0; end--) {
+            if ((end & CHECK_MASK) == 0) checkCancelled();
+            int max = heap[0];
+            heap[0] = heap[end];
+            heap[end] = max;
+            hits += 4 + siftDown(heap, 0, end);
+        }
+
+        // Read off the selected ranks; complemented values are in descending order
+        for (int i = 0; i < m; i++) {
+            sortedInts[i] = complement ? ~heap[n - 1 - ranks[i]] : heap[ranks[i]];
+        }
+        memHits += hits + 2L*m;
+
+        // Selection complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    /**
+     * Sifts <code>heap[hole]</code> down the max-heap <code>heap[0, n)</code>
+     * @return number of array accesses made
+     */
+    private static long siftDown(int[] heap, int hole, int n) {
+        int value = heap[hole];
+        long hits = 2;
+        int child;
+        while ((child = 2*hole + 1) < n) {
+            if (child + 1 < n && heap[child + 1] > heap[child]) child++;
+            hits += 2;
+            if (heap[child] <= value) break;
+            heap[hole] = heap[child];
+            hits++;
+            hole = child;
+        }
+        heap[hole] = value;
+        return hits;
+    }
+}
@@ -17,13 +17,17 @@ public class HeapSort extends Sorter{
         if (values.length == 1) sortedValues = values[0];                                   memHits+=3;
         if (sortedValues == null) return;                                                   memHits++;
 
-        // Build max heap and run a heap sort on it
+        // Build max heap and run a heap sort on it.  Memory accesses are
+        // counted in a local and added to memHits once per loop
         buildHeap();
-        for (int i = sortedValues.length-1; i>=1; i--) {                                    memHits+=2;
+        long hits = 0;
+        for (int i = sortedValues.length-1; i>=1; i--) {
+            checkCancelled();
             swapElements(0, i);
-            heapSize--;                                                                     memHits++;
-            maxHeapify(0);
+            heapSize--;
+            hits += 6 + maxHeapify(0);                                                      // loop 2, swap 3, heapSize 1
         }
+        memHits += hits;
 
         // Sort complete. Set flag to true unless hardware failure
         memHits++;
@@ -35,31 +39,38 @@ public class HeapSort extends Sorter{
      * into a max heap
      */
     private void buildHeap() {
-        heapSize = sortedValues.length;                                                     memHits+=2;
-        for (int i = (sortedValues.length-1)/2; i >= 0; i--) {                              memHits+=2;
-            maxHeapify(i);
+        heapSize = sortedValues.length;
+        long hits = 2;
+        for (int i = (sortedValues.length-1)/2; i >= 0; i--) {
+            checkCancelled();
+            hits += 2 + maxHeapify(i);
         }
+        memHits += hits;
     }
 
     /**
      * Turns the partial max heap with root at index <code>i</code>
-     * into a max heap
+     * into a max heap by sifting the root down
      * @param root Index of root node in partial max heap
+     * @return number of memory accesses made
      */
-    private void maxHeapify(int root) {
-        int lc = leftChild(root);                                                           memHits++;
-        int rc = rightChild(root);                                                          memHits++;
-
-        int largest = root;                                                                 memHits+=2;
-        if (lc < heapSize && sortedValues[lc] > sortedValues[root]) {                       memHits+=4;
-            largest = lc;                                                                   memHits+=2;
-        }
-        if (rc < heapSize && sortedValues[rc] > sortedValues[largest]) {                    memHits+=4;
-            largest = rc;                                                                   memHits+=2;
-        }
-        if (largest != root) {                                                              memHits+=2;
+    private long maxHeapify(int root) {
+        long hits = 0;
+        while (true) {
+            int lc = leftChild(root);
+            int rc = rightChild(root);
+            int largest = root;
+            hits += 6;                                                                      // lc 2, rc 2, largest 2
+            if (lc < heapSize && sortedValues[lc] > sortedValues[root]) {
+                largest = lc;                                                               hits+=6;
+            }
+            if (rc < heapSize && sortedValues[rc] > sortedValues[largest]) {
+                largest = rc;                                                               hits+=6;
+            }
+            if (largest == root) return hits;
             swapElements(root, largest);
-            maxHeapify(largest);
+            hits += 5;                                                                      // test 2, swap 3
+            root = largest;
         }
     }
 
@@ -69,7 +80,6 @@ public class HeapSort extends Sorter{
      * @return index of left child node
      */
     private int leftChild(int index) {
-        memHits++;
         return index*2;
     }
 
@@ -79,30 +89,23 @@ public class HeapSort extends Sorter{
      * @return index of right child node
      */
     private int rightChild(int index) {
-        memHits++;
         return index*2+1;
     }
 
     /**
      * Swaps two elements in the <code>sortedValues</code> array
      * each with <code>index1</code> and <code>index2</code>
-     * respectively
+     * respectively.  Its 3 memory accesses are counted by the caller
      * @param index1 index of first element
      * @param index2 index of second element
      */
     private void swapElements(int index1, int index2) {
-        if (index1 < 0 || index1 >= sortedValues.length) {
-            memHits+=3;
-            return;
-        }
-        if (index2 < 0 || index2 >= sortedValues.length) {
-            memHits += 3;
-            return;
-        }
+        if (index1 < 0 || index1 >= sortedValues.length) return;
+        if (index2 < 0 || index2 >= sortedValues.length) return;
 
-        Integer temp = sortedValues[index1];                                                memHits++;
-        sortedValues[index1] = sortedValues[index2];                                        memHits++;
-        sortedValues[index2] = temp;                                                        memHits++;
+        Integer temp = sortedValues[index1];
+        sortedValues[index1] = sortedValues[index2];
+        sortedValues[index2] = temp;
     }
 
     @Override
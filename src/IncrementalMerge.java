@@ -0,0 +1,158 @@
+import java.io.IOException;
+
+/**
+ * Subclass of Sorter that merges new values into a previously sorted
+ * output file.  The sorted new values are held in memory, the previous
+ * output is streamed in batches, and the merge is written straight to
+ * the output file, so only the new values ever have to be sorted.
+ *
+ * The result is adjudicated while it is merged by a
+ * <code>StreamingSortedCheck</code>.  The new values are summarised
+ * up front, and the previous output by the count and hash of its
+ * header if it is binary, or otherwise as it is read; a previous
+ * output that is not in order is rejected.  The merge is never read
+ * back.  Without a previous output the new values alone are written,
+ * so the first run of a series needs no seed file.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class IncrementalMerge extends Sorter {
+
+    private static final int BATCH = 1 << 16;                   // Previous values read at once
+
+    private String previousFile;
+    private String outFile;
+    private boolean binaryOutput;
+    private int[] delta;                            // Sorted new values
+    private long count;                             // Values written so far
+
+    private StreamingSortedCheck check;
+
+    /**
+     * Sets the files merged from and to
+     * @param previousFile previous sorted output, null if there is none
+     * @param outFile file to write the merge to
+     * @param binaryOutput true to write the binary format, false for text
+     */
+    public void setFiles(String previousFile, String outFile, boolean binaryOutput) {
+        this.previousFile = previousFile;
+        this.outFile = outFile;
+        this.binaryOutput = binaryOutput;
+    }
+    public void setDelta(int[] delta) { this.delta = delta; }
+
+    /**
+     * Returns true if the streaming adjudicator accepted the output
+     */
+    public boolean isAccepted() { return check != null && check.isAccepted(); }
+
+    /**
+     * Returns the number of values written, which once the merge has
+     * finished is the exact size of the previous output plus the new
+     * values
+     */
+    public long getCount() { return count; }
+
+    /**
+     * Merge the previous output and the new values into the output
+     * file.  The values argument is ignored.
+     */
+    @Override
+    protected void sort(Integer[]... values) {
+        if (outFile == null || delta == null) return;                                      memHits+=2;
+        IntStreamReader reader = null;
+        IntStreamWriter out = null;
+        long hits = 0;
+
+        try {
+            check = new StreamingSortedCheck(true);
+            check.addOriginal(delta, 0, delta.length);
+            if (previousFile != null) reader = new IntStreamReader(previousFile);
+            BinaryIntFile.Header header = (reader != null) ? reader.getHeader() : null;
+            if (header != null) check.addOriginal(header.count, header.hash);
+            out = new IntStreamWriter(outFile, binaryOutput, true);
+
+            int[] batch = new int[BATCH];
+            int position = 0;
+            int limit = 0;
+            int d = 0;
+            int last = Integer.MIN_VALUE;
+            while (true) {
+                checkCancelled();
+                if (position == limit) {
+                    limit = (reader != null) ? Math.max(0, reader.read(batch, 0, batch.length)) : 0;
+                    position = 0;
+                    if (limit == 0) break;
+                    if (header == null) check.addOriginal(batch, 0, limit);
+                }
+
+                // Take new values up to the next previous value, then that value
+                int value = batch[position++];
+                if (value < last) {
+                    System.out.println("Previous output " + previousFile + " is not sorted");
+                    return;
+                }
+                last = value;
+                int from = d;
+                while (d < delta.length && delta[d] < value) d++;
+                write(out, delta, from, d);
+                out.write(value);
+                check.addSorted(value);
+                count++;
+                hits += 4L*(d - from) + 4;
+
+                // Copy the rest of the batch below the next new value in one go
+                if (d < delta.length) continue;
+                int rest = limit - position;
+                for (int i = position; i < limit; i++) {
+                    if (batch[i] < last) {
+                        System.out.println("Previous output " + previousFile + " is not sorted");
+                        return;
+                    }
+                    last = batch[i];
+                }
+                write(out, batch, position, limit);
+                hits += 4L*rest;
+                position = limit;
+            }
+            write(out, delta, d, delta.length);
+            hits += 4L*(delta.length - d);
+            out.close();
+
+            // Merge complete. Set flag to true unless hardware failure
+            memHits += hits + 1;
+            sortComplete = !virtualHardwareFailure();
+        } catch (IOException ex) {
+            System.out.println("Incremental merge failed: " + ex.getMessage());
+        } finally {
+            try { reader.close(); } catch (NullPointerException | IOException ex) {}
+            try { out.close(); } catch (NullPointerException | IOException ex) {}
+        }
+    }
+
+    /**
+     * Writes <code>values[from, to)</code> to <code>out</code> and the
+     * adjudicator
+     */
+    private void write(IntStreamWriter out, int[] values, int from, int to) throws IOException {
+        out.write(values, from, to - from);
+        for (int i = from; i < to; i++) check.addSorted(values[i]);
+        count += to - from;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        String NEW_LINE = System.getProperty("line.separator");
+
+        result.append(this.getClass().getName() + " Object {" + NEW_LINE);
+        result.append("Previous file: " + previousFile + NEW_LINE);
+        result.append("Output file: " + outFile + NEW_LINE);
+        result.append("New values: " + (delta != null ? delta.length : 0) + NEW_LINE);
+        result.append("Failure probability: " + failureProbability + NEW_LINE);
+        result.append("Sort completed: " + sortComplete + NEW_LINE);
+        result.append("}");
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Subclass of IntSorter that sorts primitive values in
+ * place using the native insertion sort of <code>CInsertionSort</code>.
+ * The <code>int[]</code> is handed straight to the native routine,
+ * so no boxed copy is made before or after the call.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class IntCInsertionSort extends IntSorter {
+
+    private final CInsertionSort nativeSorter = new CInsertionSort();
+
+    @Override
+    protected void sort(int[]... values) {
+        if (values.length == 1) sortedInts = values[0];                                     memHits+=3;
+        if (sortedInts == null) return;                                                     memHits++;
+
+        // Call C sorting method directly on the primitive array.  The native
+        // routine cannot poll the cancel flag, so it is checked either side
+        checkCancelled();
+        memHits += nativeSorter.nativeSort(sortedInts);
+        checkCancelled();
+
+        // Sort complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Subclass of IntSorter that sorts primitive values in
+ * place based on the well-known Heap Sort method
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class IntHeapSort extends IntSorter {
+
+    private int heapSize;
+
+    /**
+     * Sort primitive values using a Heap Sort alogrithm.
+     * Details about arguments can be found in <code>IntSorter</code>
+     */
+    @Override
+    protected void sort(int[]... values) {
+        if (values.length == 1) sortedInts = values[0];                                     memHits+=3;
+        if (sortedInts == null) return;                                                     memHits++;
+
+        // Build max heap and run a heap sort on it.  Memory accesses are
+        // counted in a local and added to memHits once per loop
+        buildHeap();
+        long hits = 0;
+        for (int i = sortedInts.length-1; i>=1; i--) {
+            checkCancelled();
+            swapElements(0, i);
+            heapSize--;
+            hits += 6 + maxHeapify(0);                                                      // loop 2, swap 3, heapSize 1
+        }
+        memHits += hits;
+
+        // Sort complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    /**
+     * Turns the global array of values <code>sortedInts</code>
+     * into a max heap
+     */
+    private void buildHeap() {
+        heapSize = sortedInts.length;
+        long hits = 2;
+        for (int i = (sortedInts.length-1)/2; i >= 0; i--) {
+            checkCancelled();
+            hits += 2 + maxHeapify(i);
+        }
+        memHits += hits;
+    }
+
+    /**
+     * Turns the partial max heap with root at index <code>i</code>
+     * into a max heap by sifting the root down
+     * @param root Index of root node in partial max heap
+     * @return number of memory accesses made
+     */
+    private long maxHeapify(int root) {
+        long hits = 0;
+        while (true) {
+            int lc = root*2+1;
+            int rc = root*2+2;
+            int largest = root;
+            hits += 6;                                                                      // lc 2, rc 2, largest 2
+            if (lc < heapSize && sortedInts[lc] > sortedInts[root]) {
+                largest = lc;                                                               hits+=6;
+            }
+            if (rc < heapSize && sortedInts[rc] > sortedInts[largest]) {
+                largest = rc;                                                               hits+=6;
+            }
+            if (largest == root) return hits;
+            swapElements(root, largest);
+            hits += 5;                                                                      // test 2, swap 3
+            root = largest;
+        }
+    }
+
+    /**
+     * Swaps two elements in the <code>sortedInts</code> array
+     * each with <code>index1</code> and <code>index2</code>
+     * respectively.  Its 3 memory accesses are counted by the caller
+     * @param index1 index of first element
+     * @param index2 index of second element
+     */
+    private void swapElements(int index1, int index2) {
+        int temp = sortedInts[index1];
+        sortedInts[index1] = sortedInts[index2];
+        sortedInts[index2] = temp;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * An implementation of Sorter that sorts primitive
+ * <code>int</code> values in place rather than boxed
+ * <code>Integer</code> objects
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public abstract class IntSorter extends Sorter {
+
+    protected int[] sortedInts;                     // Potentially sorted primitive values
+
+    public int[] getSortedInts() { return sortedInts; }
+
+    public void setValues(int[] values) { this.sortedInts = values.clone(); }
+
+    /**
+     * Copies <code>values</code> into <code>buffer</code>, which is then
+     * sorted in place, so repeated sorts can reuse one array
+     * @param values Values to sort
+     * @param buffer Array of the same length to copy them into
+     */
+    public void setValues(int[] values, int[] buffer) {
+        if (buffer.length != values.length) throw new IllegalArgumentException("Buffer length differs");
+        setValues(values, 0, buffer);
+    }
+
+    /**
+     * Copies the <code>buffer.length</code> values of <code>values</code>
+     * starting at <code>offset</code> into <code>buffer</code>, which is
+     * then sorted in place, so a slice can be sorted without a copy of
+     * its own
+     * @param values Array holding the values to sort
+     * @param offset Index of the first value to sort
+     * @param buffer Array to copy them into
+     */
+    public void setValues(int[] values, int offset, int[] buffer) {
+        System.arraycopy(values, offset, buffer, 0, buffer.length);
+        this.sortedInts = buffer;
+    }
+
+    /**
+     * Will call concrete implementation's primitive sort method
+     */
+    @Override
+    protected void doSort() {
+        if (sortedInts == null && sortedValues != null) {
+            this.sort(new Integer[0][]);
+        } else {
+            this.sort(new int[0][]);
+        }
+    }
+
+    /**
+     * Boxed entry point kept so that an <code>IntSorter</code> can still
+     * be used wherever a <code>Sorter</code> is expected.  Values are
+     * unboxed, sorted with the primitive routine, and boxed back.
+     */
+    @Override
+    protected void sort(Integer[]... values) {
+        if (values.length == 1) sortedValues = values[0];
+        if (sortedValues == null) return;
+
+        sortedInts = new int[sortedValues.length];
+        for (int i = 0; i < sortedInts.length; i++) {
+            sortedInts[i] = sortedValues[i];
+        }
+        sort(new int[0][]);
+        for (int i = 0; i < sortedInts.length; i++) {
+            sortedValues[i] = sortedInts[i];
+        }
+    }
+
+    /**
+     * Abstract method which should be overridden to
+     * sort the given primitive values in place.  If values are
+     * not given, method should sort the global values in
+     * <code>sortedInts</code>.  Sorted values should be
+     * stored in the global variable <code>sortedInts</code>
+     */
+    protected abstract void sort(int[]... values);
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        String NEW_LINE = System.getProperty("line.separator");
+
+        result.append(this.getClass().getName() + " Object {" + NEW_LINE);
+        result.append("Values size: ");
+        result.append((sortedInts != null ? sortedInts.length : "0") + NEW_LINE);
+        result.append("Failure probability: " + failureProbability + NEW_LINE);
+        result.append("Sort completed: " + sortComplete + NEW_LINE);
+        result.append("}");
+
+        return result.toString();
+    }
+}
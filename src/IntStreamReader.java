@@ -0,0 +1,220 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads integers from a text or binary file in bounded batches,
+ * so files larger than the heap can be processed a piece at a time.
+ * The format is detected from the file's magic number, as done by
+ * <code>FileHelper.readIntsFromFile</code>.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class IntStreamReader implements Closeable {
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final BinaryIntFile.Header header;      // null for text files
+    private final String filename;
+
+    private long remaining;                         // Values left in a binary file
+    private long previous;                          // Last decoded value of a delta file
+    private long parsed;                            // Last value parsed from a text file
+    private int[] widened;                          // Batch of binary values read as longs
+    private boolean eof;
+
+    public IntStreamReader(String filename) throws IOException {
+        this(filename, BUFFER_BYTES);
+    }
+
+    public IntStreamReader(String filename, int bufferBytes) throws IOException {
+        this.filename = filename;
+        this.file = new RandomAccessFile(filename, "r");
+        this.channel = file.getChannel();
+        this.buffer = ByteBuffer.allocateDirect(Math.max(64, bufferBytes)).order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            if (BinaryIntFile.isBinary(filename)) {
+                header = BinaryIntFile.readHeader(channel);
+                remaining = header.count;
+            } else {
+                header = null;
+                channel.position(0);
+            }
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Returns the header of a binary file, or null for text files
+     */
+    public BinaryIntFile.Header getHeader() { return header; }
+
+    /**
+     * Reads up to <code>length</code> values into <code>values</code>
+     * starting at <code>offset</code>
+     * @param values Array to read values into
+     * @param offset Index of first value to fill
+     * @param length Maximum number of values to read
+     * @return number of values read, or -1 at end of file
+     * @throws IOException if cannot read from file or a value is malformed
+     */
+    public int read(int[] values, int offset, int length) throws IOException {
+        int count;
+        if (header == null) {
+            count = readText(values, offset, length);
+        } else if (header.isDeltaEncoded()) {
+            count = readDeltas(values, offset, length);
+        } else {
+            count = readRaw(values, offset, length);
+        }
+        return (count == 0 && length > 0) ? -1 : count;
+    }
+
+    /**
+     * Reads up to <code>length</code> values into <code>values</code>
+     * starting at <code>offset</code>.  Text files may hold 64 bit values;
+     * the int values of binary files are widened.
+     * @param values Array to read values into
+     * @param offset Index of first value to fill
+     * @param length Maximum number of values to read
+     * @return number of values read, or -1 at end of file
+     * @throws IOException if cannot read from file or a value is malformed
+     */
+    public int read(long[] values, int offset, int length) throws IOException {
+        int count = 0;
+        if (header == null) {
+            while (count < length && nextText()) values[offset + count++] = parsed;
+        } else {
+            if (widened == null || widened.length < length) widened = new int[Math.min(length, 1 << 16)];
+            while (count < length) {
+                int n = read(widened, 0, Math.min(widened.length, length - count));
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) values[offset + count++] = widened[i];
+            }
+        }
+        return (count == 0 && length > 0) ? -1 : count;
+    }
+
+    /**
+     * Refills the buffer, keeping any unread bytes
+     * @return false if no more bytes can be read
+     */
+    private boolean fill() throws IOException {
+        if (eof) return buffer.hasRemaining();
+        buffer.compact();
+        int read = channel.read(buffer);
+        if (read < 0) eof = true;
+        buffer.flip();
+        return buffer.hasRemaining();
+    }
+
+    private int readRaw(int[] values, int offset, int length) throws IOException {
+        int count = 0;
+        while (count < length && remaining > 0) {
+            if (buffer.remaining() < 4 && !fill()) throw new IOException("Truncated data in " + filename);
+            if (buffer.remaining() < 4) {
+                if (eof) throw new IOException("Truncated data in " + filename);
+                continue;
+            }
+            int n = (int)Math.min(Math.min(length - count, remaining), buffer.remaining() / 4);
+            buffer.asIntBuffer().get(values, offset + count, n);
+            buffer.position(buffer.position() + n*4);
+            count += n;
+            remaining -= n;
+        }
+        return count;
+    }
+
+    private int readDeltas(int[] values, int offset, int length) throws IOException {
+        int count = 0;
+        while (count < length && remaining > 0) {
+            if (buffer.remaining() < 10 && !eof) fill();
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (!buffer.hasRemaining()) throw new IOException("Truncated data in " + filename);
+                b = buffer.get();
+                zigzag |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0 && shift < 70);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[offset + count++] = (int)previous;
+            remaining--;
+        }
+        return count;
+    }
+
+    private int readText(int[] values, int offset, int length) throws IOException {
+        int count = 0;
+        while (count < length && nextText()) {
+            if (parsed < Integer.MIN_VALUE || parsed > Integer.MAX_VALUE) {
+                throw new IOException("Value out of range in " + filename + ": " + parsed);
+            }
+            values[offset + count++] = (int)parsed;
+        }
+        return count;
+    }
+
+    /**
+     * Parses the next value of a text file into <code>parsed</code>
+     * @return false at end of file
+     */
+    private boolean nextText() throws IOException {
+        // Skip whitespace between values
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) return false;
+            byte b = buffer.get(buffer.position());
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') break;
+            buffer.get();
+        }
+
+        // Accumulate negatively so the most negative value parses
+        long value = 0;
+        boolean negative = false;
+        boolean digits = false;
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) break;
+            byte b = buffer.get(buffer.position());
+            if (b >= '0' && b <= '9') {
+                int digit = b - '0';
+                long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+                if (value < Long.MIN_VALUE / 10 || value*10 < limit + digit) {
+                    throw new IOException("Value out of range in " + filename);
+                }
+                value = value*10 - digit;
+                digits = true;
+            } else if (b == '-' && !digits && !negative) {
+                negative = true;
+            } else if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                break;
+            } else {
+                throw new IOException("Malformed value in " + filename);
+            }
+            buffer.get();
+        }
+        if (!digits) throw new IOException("Malformed value in " + filename);
+        parsed = negative ? value : -value;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Object { file: " + filename + " }";
+    }
+}
@@ -0,0 +1,203 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes integers to a text or binary file one value at a time
+ * through a bounded buffer, so output larger than the heap can be
+ * produced.  For binary files the header is reserved up front and
+ * filled in on <code>close</code> with the count, range and
+ * multiset hash accumulated while writing.
+ *
+ * Text is formatted without creating an object per value: the digits
+ * of each value are produced two at a time from a lookup table into a
+ * small scratch array and copied into the buffer in one bulk put.  The
+ * direct buffer of a closed writer is kept for the next writer opened
+ * on the same thread, so repeated writes allocate no new buffers.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class IntStreamWriter implements Closeable {
+
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final byte[] DIGIT_PAIRS = new byte[200];    // "00" to "99"
+    private static final byte[] MIN_VALUE = "-9223372036854775808 ".getBytes();
+    private static final ThreadLocal<ByteBuffer> spareBuffer = new ThreadLocal<ByteBuffer>();
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_PAIRS[2*i] = (byte)('0' + i / 10);
+            DIGIT_PAIRS[2*i + 1] = (byte)('0' + i % 10);
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final boolean binary;
+    private final BinaryIntFile.Header header = new BinaryIntFile.Header();
+
+    private final byte[] digits = new byte[21];     // Sign, nineteen digits and separator of one value
+    private long previous;                          // Last value written to a delta file
+    private boolean closed;
+
+    public IntStreamWriter(String filename, boolean binary, boolean deltaEncode) throws IOException {
+        this(filename, binary, deltaEncode, BUFFER_BYTES);
+    }
+
+    public IntStreamWriter(String filename, boolean binary, boolean deltaEncode, int bufferBytes) throws IOException {
+        this.file = new RandomAccessFile(filename, "rw");
+        this.channel = file.getChannel();
+        this.buffer = acquireBuffer(Math.max(64, bufferBytes));
+        this.binary = binary;
+        digits[digits.length - 1] = ' ';
+
+        file.setLength(0);
+        header.flags = (binary && deltaEncode) ? BinaryIntFile.FLAG_DELTA_VARINT : 0;
+        if (binary) {
+            // Placeholder header, rewritten on close
+            buffer.position(BinaryIntFile.HEADER_BYTES);
+        }
+    }
+
+    /**
+     * Writes a single value
+     * @param value Value to write
+     * @throws IOException if cannot write to file
+     */
+    public void write(int value) throws IOException {
+        if (buffer.remaining() < digits.length) flush();
+
+        if (header.count == 0 || value < header.min) header.min = value;
+        if (header.count == 0 || value > header.max) header.max = value;
+        header.count++;
+        header.hash += SortedCheck.mix(value);
+
+        if (!binary) {
+            putDecimal(value);
+        } else if (header.isDeltaEncoded()) {
+            long delta = value - previous;
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer.put((byte)((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            buffer.put((byte)zigzag);
+            previous = value;
+        } else {
+            buffer.putInt(value);
+        }
+    }
+
+    /**
+     * Writes a single 64 bit value to a text file
+     * @param value Value to write
+     * @throws IOException if cannot write to file
+     */
+    public void write(long value) throws IOException {
+        if (binary) throw new IllegalStateException("Binary files hold int values");
+        if (buffer.remaining() < digits.length) flush();
+        header.count++;
+        putDecimal(value);
+    }
+
+    /**
+     * Writes <code>length</code> values from <code>values</code>
+     * starting at <code>offset</code>
+     */
+    public void write(int[] values, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            write(values[i]);
+        }
+    }
+
+    /**
+     * Returns the count, range and multiset hash of the values
+     * written so far
+     */
+    public BinaryIntFile.Header getHeader() { return header; }
+
+    /**
+     * Appends the decimal text of <code>value</code> and a space
+     */
+    private void putDecimal(long value) {
+        if (value == Long.MIN_VALUE) {
+            buffer.put(MIN_VALUE);
+            return;
+        }
+        // Fill the scratch digits from the right, before the separator
+        int position = digits.length - 1;
+        long magnitude = value < 0 ? -value : value;
+        while (magnitude > Integer.MAX_VALUE) {
+            long quotient = magnitude / 100;
+            int pair = (int)(magnitude - quotient * 100) << 1;
+            digits[--position] = DIGIT_PAIRS[pair + 1];
+            digits[--position] = DIGIT_PAIRS[pair];
+            magnitude = quotient;
+        }
+        // The rest fits an int, whose division is cheaper
+        int remaining = (int)magnitude;
+        while (remaining >= 100) {
+            int quotient = remaining / 100;
+            int pair = (remaining - quotient * 100) << 1;
+            digits[--position] = DIGIT_PAIRS[pair + 1];
+            digits[--position] = DIGIT_PAIRS[pair];
+            remaining = quotient;
+        }
+        if (remaining >= 10) {
+            digits[--position] = DIGIT_PAIRS[2*remaining + 1];
+            digits[--position] = DIGIT_PAIRS[2*remaining];
+        } else {
+            digits[--position] = (byte)('0' + remaining);
+        }
+        if (value < 0) digits[--position] = '-';
+        buffer.put(digits, position, digits.length - position);
+    }
+
+    /**
+     * Returns this thread's spare buffer if it has the requested size,
+     * or a new direct buffer otherwise
+     */
+    private static ByteBuffer acquireBuffer(int bytes) {
+        ByteBuffer spare = spareBuffer.get();
+        if (spare != null && spare.capacity() == bytes) {
+            spareBuffer.set(null);
+            spare.clear();
+            return spare;
+        }
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        BinaryIntFile.writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            flush();
+            if (binary) {
+                BinaryIntFile.putHeader(buffer, header);
+                buffer.flip();
+                channel.position(0);
+                BinaryIntFile.writeFully(channel, buffer);
+            }
+        } finally {
+            file.close();
+            buffer.clear();
+            spareBuffer.set(buffer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Object { binary: " + binary + ", " + header + " }";
+    }
+}
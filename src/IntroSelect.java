@@ -0,0 +1,167 @@
+/**
+ * Subclass of SelectionSorter that selects by partitioning, as
+ * quickselect does for one rank.  A copy of the input is partitioned
+ * three ways around a median-of-three pivot, and only the sides that
+ * hold requested ranks are partitioned further, so selecting m ranks
+ * costs O(n log m) expected time.  Runs of values equal to the pivot
+ * are placed at once, which keeps inputs with few distinct values
+ * linear.  A part that is still being partitioned after twice the
+ * expected depth is heap sorted instead, which bounds the worst case
+ * at O(n log n) as in introsort.
+ *
+ * Its design shares nothing with <code>HeapSelect</code>, so it is
+ * the natural alternate of a bounded heap selection.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class IntroSelect extends SelectionSorter {
+
+    private static final int INSERTION_CUTOFF = 16;            // Parts insertion sorted
+
+    /**
+     * Select values using introselect.
+     * Details about arguments can be found in <code>IntSorter</code>
+     */
+    @Override
+    protected void sort(int[]... values) {
+        if (values.length == 1) source = values[0];                                         memHits+=3;
+        if (source == null || ranks == null) return;                                        memHits+=2;
+        int n = source.length;
+        int[] a = source.clone();
+        memHits += 2L*n;
+
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(n));
+        memHits += select(a, 0, n, 0, ranks.length, depth);
+
+        sortedInts = new int[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            sortedInts[i] = a[ranks[i]];
+        }
+        memHits += 3L*ranks.length;
+
+        // Selection complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    /**
+     * Places the values of ranks <code>ranks[rlo, rhi)</code>, which
+     * all lie in <code>[lo, hi)</code>, at their positions in
+     * <code>a</code>
+     * @return number of array accesses made
+     */
+    private long select(int[] a, int lo, int hi, int rlo, int rhi, int depth) {
+        long hits = 0;
+        while (rlo < rhi) {
+            checkCancelled();
+            if (hi - lo <= INSERTION_CUTOFF) {
+                return hits + insertionSort(a, lo, hi);
+            }
+            if (depth-- == 0) {
+                return hits + heapSort(a, lo, hi);
+            }
+
+            // Partition into < pivot, == pivot and > pivot
+            int pivot = medianOfThree(a[lo], a[(lo + hi) >>> 1], a[hi - 1]);
+            int lt = lo, i = lo, gt = hi;
+            while (i < gt) {
+                int value = a[i];
+                if (value < pivot) {
+                    a[i++] = a[lt];
+                    a[lt++] = value;
+                    hits += 4;
+                } else if (value > pivot) {
+                    a[i] = a[--gt];
+                    a[gt] = value;
+                    hits += 4;
+                } else {
+                    i++;
+                    hits++;
+                }
+            }
+            hits += 3;
+
+            // Ranks below lt lie on the left; ranks in [lt, gt) are placed
+            int left = rlo;
+            while (left < rhi && ranks[left] < lt) left++;
+            int right = left;
+            while (right < rhi && ranks[right] < gt) right++;
+            hits += right - rlo;
+
+            // Recurse into the side with fewer values, loop on the other
+            if (lt - lo < hi - gt) {
+                hits += select(a, lo, lt, rlo, left, depth);
+                lo = gt;
+                rlo = right;
+            } else {
+                hits += select(a, gt, hi, right, rhi, depth);
+                hi = lt;
+                rhi = left;
+            }
+        }
+        return hits;
+    }
+
+    private static int medianOfThree(int x, int y, int z) {
+        return Math.max(Math.min(x, y), Math.min(Math.max(x, y), z));
+    }
+
+    /**
+     * Sorts <code>a[lo, hi)</code> by insertion
+     * @return number of array accesses made
+     */
+    private static long insertionSort(int[] a, int lo, int hi) {
+        long hits = 0;
+        for (int i = lo + 1; i < hi; i++) {
+            int value = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > value) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = value;
+            hits += 3L*(i - j) + 1;
+        }
+        return hits;
+    }
+
+    /**
+     * Sorts <code>a[lo, hi)</code> with a binary heap sort
+     * @return number of array accesses made
+     */
+    private static long heapSort(int[] a, int lo, int hi) {
+        int n = hi - lo;
+        long hits = 0;
+        for (int i = n/2 - 1; i >= 0; i--) {
+            hits += siftDown(a, lo, i, n);
+        }
+        for (int end = n - 1; end > 0; end--) {
+            int max = a[lo];
+            a[lo] = a[lo + end];
+            a[lo + end] = max;
+            hits += 4 + siftDown(a, lo, 0, end);
+        }
+        return hits;
+    }
+
+    /**
+     * Sifts <code>a[lo + hole]</code> down the max-heap
+     * <code>a[lo, lo + n)</code>
+     * @return number of array accesses made
+     */
+    private static long siftDown(int[] a, int lo, int hole, int n) {
+        int value = a[lo + hole];
+        long hits = 2;
+        int child;
+        while ((child = 2*hole + 1) < n) {
+            if (child + 1 < n && a[lo + child + 1] > a[lo + child]) child++;
+            hits += 2;
+            if (a[lo + child] <= value) break;
+            a[lo + hole] = a[lo + child];
+            hits++;
+            hole = child;
+        }
+        a[lo + hole] = value;
+        return hits;
+    }
+}
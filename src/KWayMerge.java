@@ -0,0 +1,112 @@
+/**
+ * Subclass of IntSorter that merges already sorted runs into one
+ * sorted array using a primitive min-heap of the head value of every
+ * run.  Used to combine the separately sorted chunks of a partitioned
+ * recovery block; the runs themselves are never modified, so a failed
+ * merge can simply be run again.
+ *
+ * Memory accesses are counted in locals and added to
+ * <code>memHits</code> once the merge is done.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class KWayMerge extends IntSorter {
+
+    private static final int CHECK_MASK = (1 << 12) - 1;        // Cancel checked every 4096 values
+
+    private int[][] runs;
+
+    /**
+     * Sets the sorted runs to merge
+     * @param runs Runs each sorted in increasing order
+     */
+    public void setRuns(int[][] runs) { this.runs = runs.clone(); }
+
+    /**
+     * Merge the runs into a new array.  The values argument is ignored.
+     * Details about arguments can be found in <code>IntSorter</code>
+     */
+    @Override
+    protected void sort(int[]... values) {
+        if (runs == null) return;                                                           memHits++;
+        int k = runs.length;
+        long total = 0;
+        for (int[] run : runs) total += run.length;
+        sortedInts = new int[(int)total];                                                   memHits+=2;
+
+        int[] heapValues = new int[k];
+        int[] heapRuns = new int[k];
+        int[] positions = new int[k];
+        int size = 0;
+        long hits = 0;
+        for (int r = 0; r < k; r++) {
+            if (runs[r].length == 0) continue;
+            heapValues[size] = runs[r][0];
+            heapRuns[size] = r;
+            positions[r] = 1;
+            size++;
+            hits += 4;
+        }
+        for (int i = size/2 - 1; i >= 0; i--) {
+            hits += siftDown(heapValues, heapRuns, size, i);
+        }
+
+        int out = 0;
+        while (size > 0) {
+            if ((out & CHECK_MASK) == 0) checkCancelled();
+            int run = heapRuns[0];
+            sortedInts[out++] = heapValues[0];
+            int[] current = runs[run];
+            if (positions[run] < current.length) {
+                heapValues[0] = current[positions[run]++];
+            } else {
+                size--;
+                heapValues[0] = heapValues[size];
+                heapRuns[0] = heapRuns[size];
+            }
+            hits += 6 + siftDown(heapValues, heapRuns, size, 0);                            // read head, write value, advance run
+        }
+        memHits += hits;
+
+        // Merge complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    /**
+     * Restores the min-heap property below <code>root</code>
+     * @return number of memory accesses made
+     */
+    private static long siftDown(int[] values, int[] runs, int size, int root) {
+        if (size == 0) return 0;
+        int value = values[root];
+        int run = runs[root];
+        long hits = 2;
+        int child;
+        while ((child = 2*root + 1) < size) {
+            if (child + 1 < size && values[child + 1] < values[child]) child++;
+            if (values[child] >= value) break;
+            values[root] = values[child];
+            runs[root] = runs[child];
+            root = child;
+            hits += 6;
+        }
+        values[root] = value;
+        runs[root] = run;
+        return hits + 2;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        String NEW_LINE = System.getProperty("line.separator");
+
+        result.append(this.getClass().getName() + " Object {" + NEW_LINE);
+        result.append("Runs: " + (runs != null ? runs.length : 0) + NEW_LINE);
+        result.append("Failure probability: " + failureProbability + NEW_LINE);
+        result.append("Sort completed: " + sortComplete + NEW_LINE);
+        result.append("}");
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads whitespace separated ASCII integers from a file by
+ * memory-mapping it and parsing digits straight from the mapped
+ * bytes into a primitive array.  No <code>String</code> is created
+ * per value, and the file is split at whitespace boundaries so the
+ * chunks can be parsed in parallel.
+ *
+ * Parsing is done in two passes over the mapped chunks: the first
+ * counts the values in each chunk, the second parses each chunk
+ * directly into its slice of a single, exactly sized result array.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class MappedIntReader {
+
+    private static final long MIN_CHUNK_BYTES = 1 << 20;            // Smallest chunk worth a task
+    private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE - 64; // Largest single mapping
+    private static final int WINDOW_BYTES = 1 << 14;                // Bulk copy window size
+
+    /**
+     * Reads all integers from <code>filename</code> using every
+     * available core
+     * @param filename Name of file to read
+     * @return int[] of all values found
+     * @throws IOException if cannot read from file or a value is malformed
+     */
+    public static int[] read(String filename) throws IOException {
+        return read(filename, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reads all integers from <code>filename</code> using at most
+     * <code>parallelism</code> threads
+     * @param filename Name of file to read
+     * @param parallelism Maximum number of chunks parsed at once
+     * @return int[] of all values found
+     * @throws IOException if cannot read from file or a value is malformed
+     */
+    public static int[] read(String filename, int parallelism) throws IOException {
+        RandomAccessFile file = null;
+
+        try {
+            file = new RandomAccessFile(filename, "r");
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size == 0) return new int[0];
+
+            List<Chunk> chunks = split(channel, size, Math.max(1, parallelism));
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+            try {
+                // Pass one: count values in every chunk
+                invokeAll(pool, chunks, false, null);
+
+                long total = 0;
+                for (Chunk chunk : chunks) {
+                    chunk.offset = total;
+                    total += chunk.count;
+                }
+                if (total > Integer.MAX_VALUE) {
+                    throw new IOException("Too many values in " + filename + ": " + total);
+                }
+
+                // Pass two: parse every chunk into its slice of the result
+                int[] values = new int[(int)total];
+                invokeAll(pool, chunks, true, values);
+                return values;
+            } catch (UncheckedIOException ex) {
+                throw new IOException("Malformed value in " + filename, ex.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        } finally {
+            try { file.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    /**
+     * Splits the file into roughly equal chunks whose boundaries
+     * fall on whitespace, so no value is split across two chunks
+     */
+    private static List<Chunk> split(FileChannel channel, long size, int parallelism) throws IOException {
+        long count = Math.max(1, Math.min(parallelism * 4L, size / MIN_CHUNK_BYTES));
+        count = Math.max(count, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        ByteBuffer probe = ByteBuffer.allocate(64);
+        long start = 0;
+        for (long i = 1; i <= count && start < size; i++) {
+            long end = (i == count) ? size : Math.max(start, size / count * i);
+            // Move the boundary forward to the next whitespace byte
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) { end = size; break; }
+                int j = 0;
+                while (j < read && !isWhitespace(probe.get(j))) j++;
+                end += j;
+                if (j < read) break;
+            }
+            if (end > start) {
+                chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+            }
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static void invokeAll(ForkJoinPool pool, List<Chunk> chunks, final boolean parse, final int[] values) {
+        final List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for (final Chunk chunk : chunks) {
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    try {
+                        chunk.scan(parse ? values : null);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * A whitespace aligned region of the mapped file
+     */
+    private static class Chunk {
+        final MappedByteBuffer buffer;
+        long count;                 // Number of values in this chunk
+        long offset;                // Index of this chunk's first value in the result
+
+        Chunk(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Scans the chunk, counting values when <code>values</code> is
+         * null and otherwise parsing them into <code>values</code>
+         * starting at <code>offset</code>
+         */
+        void scan(int[] values) throws IOException {
+            ByteBuffer bytes = buffer.duplicate();
+            byte[] window = new byte[WINDOW_BYTES];
+            int index = (int)offset;
+            long found = 0;
+            int value = 0;
+            boolean negative = false;
+            boolean inValue = false;
+
+            while (bytes.hasRemaining()) {
+                int length = Math.min(window.length, bytes.remaining());
+                bytes.get(window, 0, length);
+                for (int i = 0; i < length; i++) {
+                    byte b = window[i];
+                    if (b >= '0' && b <= '9') {
+                        // Accumulate negatively so that Integer.MIN_VALUE fits
+                        int digit = b - '0';
+                        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+                        if (value < Integer.MIN_VALUE / 10 || value*10 < limit + digit) {
+                            throw new IOException("Value out of range");
+                        }
+                        value = value*10 - digit;
+                        inValue = true;
+                    } else if (isWhitespace(b)) {
+                        if (inValue) {
+                            if (values != null) values[index++] = negative ? value : -value;
+                            found++;
+                        } else if (negative) {
+                            throw new IOException("Dangling sign");
+                        }
+                        value = 0;
+                        negative = false;
+                        inValue = false;
+                    } else if (b == '-' && !inValue && !negative) {
+                        negative = true;
+                    } else {
+                        throw new IOException("Unexpected byte " + b);
+                    }
+                }
+            }
+            if (inValue) {
+                if (values != null) values[index] = negative ? value : -value;
+                found++;
+            } else if (negative) {
+                throw new IOException("Dangling sign");
+            }
+            count = found;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Class Object";
+    }
+}
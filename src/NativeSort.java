@@ -0,0 +1,96 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Subclass of IntSorter that sorts primitive values in place with
+ * the native introsort of <code>native/nativeSort.c</code>: an
+ * O(n log n) median-of-three quicksort with a heap sort fallback and
+ * insertion sort for small ranges.
+ *
+ * The library is loaded once, when the class is initialized.  A small
+ * <code>int[]</code> is pinned for the native call rather than copied,
+ * but one of more than 64K values is copied into native memory and
+ * back, as pinning holds off garbage collection in every thread while
+ * the sort runs.  Large inputs are sorted without copies only when they
+ * are already held off the heap: <code>sort(ByteBuffer, long,
+ * ByteBuffer)</code> sorts a direct buffer at its address, and is used
+ * by <code>OffHeapNativeSort</code> on the segments of an
+ * <code>OffHeapStore</code>.
+ *
+ * Unlike <code>CInsertionSort</code> the native routine polls a cancel
+ * flag kept in a direct buffer, so a timed out sort stops promptly.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class NativeSort extends IntSorter {
+
+    private static UnsatisfiedLinkError loadError;              // Set if the library could not be loaded
+
+    static {
+        try {
+            System.loadLibrary("nativeSort");
+        } catch (UnsatisfiedLinkError ex) {
+            loadError = ex;
+        }
+    }
+
+    private final ByteBuffer cancelFlag = ByteBuffer.allocateDirect(4).order(ByteOrder.nativeOrder());
+
+    /**
+     * Sort primitive values using the native introsort.
+     * Details about arguments can be found in <code>IntSorter</code>
+     */
+    @Override
+    protected void sort(int[]... values) {
+        if (values.length == 1) sortedInts = values[0];                                     memHits+=3;
+        if (sortedInts == null) return;                                                     memHits++;
+
+        checkLoaded();
+        checkCancelled();
+        long hits = sortInts(sortedInts, cancelFlag);
+        if (hits < 0) {
+            // Native sort stopped early
+            checkCancelled();
+            throw new IllegalStateException("Native sort failed");
+        }
+        memHits += hits;
+
+        // Sort complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    /**
+     * Also raises the cancel flag polled by the native sort
+     */
+    @Override
+    public void cancel() {
+        super.cancel();
+        cancelFlag.putInt(0, 1);
+    }
+
+    /**
+     * Sorts the first <code>count</code> ints of a direct buffer in
+     * place.  The ints must be stored in the native byte order.
+     * @param values direct buffer holding the values
+     * @param count number of ints to sort
+     * @param cancel direct buffer whose first int is polled by the sort,
+     *               which stops early once it is not 0
+     * @return number of memory accesses made, or -1 if cancelled
+     */
+    public static long sort(ByteBuffer values, long count, ByteBuffer cancel) {
+        checkLoaded();
+        if (!values.isDirect() || !cancel.isDirect()) throw new IllegalArgumentException("Buffer is not direct");
+        if (count < 0 || count * 4 > values.capacity()) {
+            throw new IndexOutOfBoundsException("Buffer holds fewer than " + count + " ints");
+        }
+        return sortDirect(values, count, cancel);
+    }
+
+    private static void checkLoaded() {
+        if (loadError != null) throw loadError;
+    }
+
+    private static native long sortInts(int[] values, ByteBuffer cancel);
+    private static native long sortDirect(ByteBuffer values, long count, ByteBuffer cancel);
+}
@@ -0,0 +1,70 @@
+/**
+ * Subclass of OffHeapSorter that sorts the store in place with a
+ * binary heap sort.  It needs no scratch store and runs on one thread
+ * in O(n log n) time, and its design shares nothing with
+ * <code>OffHeapRadixSort</code>, so it is the natural alternate of a
+ * radix sort when memory for a second store is short.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class OffHeapHeapSort extends OffHeapSorter {
+
+    private static final long CHECK_MASK = (1 << 12) - 1;       // Cancel checked every 4096 sifts
+
+    /**
+     * Sort the store using a heap sort.
+     */
+    @Override
+    protected void sortStore() {
+        long n = store.size();
+        long hits = 0;
+
+        // Build a max-heap
+        for (long i = n/2 - 1; i >= 0; i--) {
+            if ((i & CHECK_MASK) == 0) checkCancelled();
+            hits += siftDown(i, n);
+        }
+
+        // Move the maximum behind the shrinking heap
+        for (long end = n - 1; end > 0; end--) {
+            if ((end & CHECK_MASK) == 0) checkCancelled();
+            long max = store.get(0);
+            store.set(0, store.get(end));
+            store.set(end, max);
+            hits += 4 + siftDown(0, end);
+        }
+        memHits += hits;
+
+        // Sort complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    /**
+     * Sifts the value at <code>hole</code> down the max-heap of the
+     * first <code>n</code> values of the store
+     * @return number of memory accesses made
+     */
+    private long siftDown(long hole, long n) {
+        long value = store.get(hole);
+        long hits = 2;
+        long child;
+        while ((child = 2*hole + 1) < n) {
+            long larger = store.get(child);
+            if (child + 1 < n) {
+                long right = store.get(child + 1);
+                if (right > larger) {
+                    larger = right;
+                    child++;
+                }
+            }
+            hits += 2;
+            if (larger <= value) break;
+            store.set(hole, larger);
+            hits++;
+            hole = child;
+        }
+        store.set(hole, value);
+        return hits;
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Subclass of OffHeapSorter that sorts a store of int values with the
+ * native introsort of <code>NativeSort</code>.  Every segment of the
+ * store is a direct buffer, and is sorted by the native code at its
+ * address, so the values are never copied onto the Java heap or into
+ * native memory.  A store of one segment, up to 2^28 values, is sorted
+ * entirely in place; the sorted segments of a larger store are then
+ * merged in passes through one scratch store of the same kind.
+ *
+ * The native sort polls a cancel flag kept in a direct buffer, which
+ * <code>cancel</code> raises, so a timed out sort stops promptly.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class OffHeapNativeSort extends OffHeapSorter {
+
+    private static final int CHECK_INTERVAL = 1 << 16;          // Values merged between cancel checks
+
+    private final ByteBuffer cancelFlag = ByteBuffer.allocateDirect(4).order(ByteOrder.nativeOrder());
+
+    /**
+     * Sort the store using the native introsort on each segment.
+     */
+    @Override
+    protected void sortStore() {
+        if (store.isWide()) {
+            System.out.println("OffHeapNativeSort sorts int values only");
+            return;
+        }
+        long n = store.size();
+        long run = store.segmentValues();
+
+        // Sort every segment at its address
+        for (int s = 0; (long)s * run < n; s++) {
+            checkCancelled();
+            long hits = NativeSort.sort(store.segment(s), Math.min(run, n - s * run), cancelFlag);
+            if (hits < 0) {
+                // Native sort stopped early
+                checkCancelled();
+                throw new IllegalStateException("Native sort failed");
+            }
+            memHits += hits;
+        }
+
+        if (n > run && !merge(n, run)) return;
+
+        // Sort complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    /**
+     * Merges the sorted runs of <code>run</code> values of the store in
+     * pairs, doubling the run length each pass, back and forth between
+     * the store and a scratch store
+     * @return true if merged, false if the scratch store could not be used
+     */
+    private boolean merge(long n, long run) {
+        OffHeapStore scratch;
+        try {
+            scratch = store.createLike();
+        } catch (IOException ex) {
+            System.out.println("Could not create scratch store: " + ex.getMessage());
+            return false;
+        }
+
+        try {
+            OffHeapStore src = store;
+            OffHeapStore dst = scratch;
+            for (long width = run; width < n; width *= 2) {
+                for (long from = 0; from < n; from += 2 * width) {
+                    long mid = Math.min(n, from + width);
+                    long to = Math.min(n, from + 2 * width);
+                    long i = from, j = mid;
+                    for (long k = from; k < to; k++) {
+                        if (((k - from) & (CHECK_INTERVAL - 1)) == 0) checkCancelled();
+                        if (j >= to || (i < mid && src.get(i) <= src.get(j))) dst.set(k, src.get(i++));
+                        else dst.set(k, src.get(j++));
+                    }
+                }
+                memHits += 4L*n;                                                            // compare, read, write
+                OffHeapStore temp = src;
+                src = dst;
+                dst = temp;
+            }
+            if (src != store) {
+                src.copyTo(store);
+                memHits += 2L*n;
+            }
+        } catch (IOException ex) {
+            System.out.println("Could not copy sorted values: " + ex.getMessage());
+            return false;
+        } finally {
+            scratch.close();
+        }
+        return true;
+    }
+
+    /**
+     * Also raises the cancel flag polled by the native sort
+     */
+    @Override
+    public void cancel() {
+        super.cancel();
+        cancelFlag.putInt(0, 1);
+    }
+}
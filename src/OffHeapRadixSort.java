@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Subclass of OffHeapSorter that sorts with a parallel least
+ * significant digit radix sort over 8-bit digits, four for int values
+ * and eight for long values.  The sign bit of the most significant
+ * digit is flipped so negative values sort before positive ones.
+ *
+ * Each pass splits the values into one slice per thread.  Every slice
+ * builds its own histogram of the digit, the histograms are turned
+ * into disjoint starting offsets per slice and digit value, and every
+ * slice then scatters its values into a scratch store at its offsets,
+ * so the threads never write the same position and equal digits keep
+ * their order.  A digit whose values are all equal is skipped.  Values
+ * are scattered back and forth between the store and one scratch
+ * store of the same kind, and copied back if they end in the scratch.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class OffHeapRadixSort extends OffHeapSorter {
+
+    private static final int RADIX = 256;
+    private static final int CHECK_INTERVAL = 1 << 16;          // Values processed between cancel checks
+    private static final long MIN_SLICE = 1 << 16;              // Smallest slice given to one thread
+
+    /**
+     * Sort the store using a parallel radix sort.
+     */
+    @Override
+    protected void sortStore() {
+        long n = store.size();
+        int digits = store.isWide() ? 8 : 4;
+        int slices = (int)Math.min(parallelism, n / MIN_SLICE + 1);
+        long slice = (n + slices - 1) / slices;
+        ForkJoinPool pool = SortExecutor.forkJoinPool(slices);
+
+        OffHeapStore scratch;
+        try {
+            scratch = store.createLike();
+        } catch (IOException ex) {
+            System.out.println("Could not create scratch store: " + ex.getMessage());
+            return;
+        }
+
+        try {
+            OffHeapStore src = store;
+            OffHeapStore dst = scratch;
+            for (int d = 0; d < digits; d++) {
+                int shift = 8*d;
+
+                // Histogram the digit in every slice
+                long[][] counts = new long[slices][];
+                List<Histogram> histograms = new ArrayList<Histogram>();
+                for (int s = 0; s < slices; s++) {
+                    histograms.add(new Histogram(src, s*slice, Math.min(n, (s+1)*slice), shift));
+                }
+                invokeAll(pool, histograms);
+                for (int s = 0; s < slices; s++) counts[s] = histograms.get(s).join();
+                memHits += 2L*n;                                                            // read value, count update
+
+                // Turn counts into starting offsets, by digit value then slice
+                long offset = 0;
+                boolean uniform = false;
+                for (int b = 0; b < RADIX; b++) {
+                    long start = offset;
+                    for (int s = 0; s < slices; s++) {
+                        long c = counts[s][b];
+                        counts[s][b] = offset;
+                        offset += c;
+                    }
+                    if (offset - start == n) uniform = true;
+                }
+                memHits += 2L*RADIX*slices;
+                if (uniform) continue;                                                      // All values share this digit
+
+                // Scatter every slice at its offsets, keeping the order of equal digits
+                List<Scatter> scatters = new ArrayList<Scatter>();
+                for (int s = 0; s < slices; s++) {
+                    scatters.add(new Scatter(src, dst, s*slice, Math.min(n, (s+1)*slice), shift, counts[s]));
+                }
+                invokeAll(pool, scatters);
+                memHits += 4L*n;                                                            // read, offset, write
+
+                OffHeapStore temp = src;
+                src = dst;
+                dst = temp;
+            }
+            if (src != store) {
+                src.copyTo(store);
+                memHits += 2L*n;
+            }
+        } catch (IOException ex) {
+            System.out.println("Could not copy sorted values: " + ex.getMessage());
+            return;
+        } finally {
+            scratch.close();
+        }
+
+        // Sort complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    /**
+     * Runs every task on <code>pool</code> and waits for all of them
+     */
+    private static void invokeAll(ForkJoinPool pool, final List<? extends ForkJoinTask<?>> tasks) {
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Returns <code>value</code> with its sign bit flipped, as an
+     * unsigned key of the width of the store
+     */
+    private long key(long value) {
+        return store.isWide() ? value ^ Long.MIN_VALUE : (value ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Task counting the digits of the values in <code>[from, to)</code>
+     */
+    private class Histogram extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final OffHeapStore src;
+        private final long from, to;
+        private final int shift;
+
+        Histogram(OffHeapStore src, long from, long to, int shift) {
+            this.src = src; this.from = from; this.to = to; this.shift = shift;
+        }
+
+        @Override
+        protected long[] compute() {
+            long[] count = new long[RADIX];
+            for (long i = from; i < to; i++) {
+                if (((i - from) & (CHECK_INTERVAL - 1)) == 0) checkCancelled();
+                count[(int)(key(src.get(i)) >>> shift) & 0xFF]++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Task moving the values in <code>[from, to)</code> to the offsets
+     * of their digits
+     */
+    private class Scatter extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final OffHeapStore src, dst;
+        private final long from, to;
+        private final int shift;
+        private final long[] offsets;
+
+        Scatter(OffHeapStore src, OffHeapStore dst, long from, long to, int shift, long[] offsets) {
+            this.src = src; this.dst = dst; this.from = from; this.to = to;
+            this.shift = shift; this.offsets = offsets;
+        }
+
+        @Override
+        protected Void compute() {
+            for (long i = from; i < to; i++) {
+                if (((i - from) & (CHECK_INTERVAL - 1)) == 0) checkCancelled();
+                long value = src.get(i);
+                dst.set(offsets[(int)(key(value) >>> shift) & 0xFF]++, value);
+            }
+            return null;
+        }
+    }
+}
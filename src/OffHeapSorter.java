@@ -0,0 +1,46 @@
+/**
+ * An implementation of Sorter that sorts the values of an
+ * <code>OffHeapStore</code> in place, for inputs too large for a Java
+ * array or with 64 bit keys.  The values never pass through
+ * <code>sortedValues</code>.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public abstract class OffHeapSorter extends Sorter {
+
+    protected OffHeapStore store;                   // Values sorted in place
+    protected int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public OffHeapStore getStore() { return store; }
+    public void setStore(OffHeapStore store) { this.store = store; }
+    public void setParallelism(int parallelism) { this.parallelism = Math.max(1, parallelism); }
+
+    /**
+     * Sort the values of the store.  The values argument is ignored.
+     */
+    @Override
+    protected void sort(Integer[]... values) {
+        if (store == null) return;                                                          memHits++;
+        sortStore();
+    }
+
+    /**
+     * Abstract method which should be overridden to sort the values of
+     * <code>store</code> in place and set <code>sortComplete</code>
+     */
+    protected abstract void sortStore();
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        String NEW_LINE = System.getProperty("line.separator");
+
+        result.append(this.getClass().getName() + " Object {" + NEW_LINE);
+        result.append("Store: " + store + NEW_LINE);
+        result.append("Failure probability: " + failureProbability + NEW_LINE);
+        result.append("Sort completed: " + sortComplete + NEW_LINE);
+        result.append("}");
+
+        return result.toString();
+    }
+}
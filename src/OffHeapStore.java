@@ -0,0 +1,282 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Array of <code>int</code> or <code>long</code> values held outside
+ * the Java heap and indexed by <code>long</code>, so it may hold more
+ * than 2^31 values and its data is never scanned or moved by the
+ * garbage collector.  Like <code>Checkpoint</code>, values live in
+ * segments of up to 1 GB, either direct <code>ByteBuffer</code>s or
+ * read-write mappings of a temporary file that is deleted on
+ * <code>close</code>; a mapped store may be larger than memory.
+ * Segments are allocated as the store grows, so values can be
+ * appended while their count is still unknown.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class OffHeapStore implements Closeable {
+
+    private static final int SEGMENT_SHIFT = 30;                    // 1 GB per segment
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+    private static final int MIN_SEGMENT_BYTES = 1 << 16;
+    private static final int BATCH = 1 << 16;                       // Values read or written at once
+
+    private final boolean wide;                                     // 64 bit values
+    private final int shift;                                        // log2 of bytes per value
+    private final File file;                                        // Backing file, null if direct
+    private final RandomAccessFile raf;
+    private ByteBuffer[] segments = new ByteBuffer[0];
+    private long capacity;                                          // Bytes of all segments
+    private long count;
+
+    private OffHeapStore(boolean wide, File file) throws IOException {
+        this.wide = wide;
+        this.shift = wide ? 3 : 2;
+        this.file = file;
+        this.raf = (file != null) ? new RandomAccessFile(file, "rw") : null;
+    }
+
+    /**
+     * Creates an empty store in direct memory
+     * @param wide true for <code>long</code> values, false for <code>int</code>
+     * @return the store
+     */
+    public static OffHeapStore direct(boolean wide) {
+        try {
+            return new OffHeapStore(wide, null);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);            // No file is opened
+        }
+    }
+
+    /**
+     * Creates an empty store in a memory-mapped temporary file
+     * @param wide true for <code>long</code> values, false for <code>int</code>
+     * @param dir Directory for the temporary file, null for the default
+     * @return the store
+     * @throws IOException if the temporary file cannot be created
+     */
+    public static OffHeapStore mapped(boolean wide, File dir) throws IOException {
+        File file = File.createTempFile("store", ".bin", dir);
+        file.deleteOnExit();
+        return new OffHeapStore(wide, file);
+    }
+
+    /**
+     * Creates a store of the same kind and size as this one, with
+     * undefined contents, such as the scratch space of a sort
+     * @return the store
+     * @throws IOException if a temporary file cannot be created
+     */
+    public OffHeapStore createLike() throws IOException {
+        OffHeapStore store = (file != null) ? mapped(wide, file.getParentFile()) : direct(wide);
+        store.setSize(count);
+        return store;
+    }
+
+    /**
+     * Reads all values of a text file, or of a file in the binary
+     * format of <code>BinaryIntFile</code>, into a new store
+     * @param filename File to read
+     * @param wide true to read 64 bit values, false for int values
+     * @param mapped true to keep the values in a mapped temporary file
+     * @return the store
+     * @throws IOException if cannot read from file or a value is malformed
+     */
+    public static OffHeapStore load(String filename, boolean wide, boolean mapped) throws IOException {
+        OffHeapStore store = mapped ? mapped(wide, null) : direct(wide);
+        IntStreamReader reader = null;
+        try {
+            reader = new IntStreamReader(filename);
+            if (wide) {
+                long[] batch = new long[BATCH];
+                int n;
+                while ((n = reader.read(batch, 0, batch.length)) > 0) {
+                    for (int i = 0; i < n; i++) store.append(batch[i]);
+                }
+            } else {
+                int[] batch = new int[BATCH];
+                int n;
+                while ((n = reader.read(batch, 0, batch.length)) > 0) {
+                    for (int i = 0; i < n; i++) store.append(batch[i]);
+                }
+            }
+        } catch (IOException ex) {
+            store.close();
+            throw ex;
+        } finally {
+            try { reader.close(); } catch (NullPointerException ex) {}
+        }
+        return store;
+    }
+
+    /**
+     * Writes all values to a file, as space separated text or, for int
+     * values, in the binary format of <code>BinaryIntFile</code>
+     * @param filename File you wish to write to
+     * @param binary true to write the binary format, false for text
+     * @param sorted true if the values are sorted, in which case
+     *               binary output is delta + varint encoded
+     * @throws IOException if cannot write to file
+     */
+    public void write(String filename, boolean binary, boolean sorted) throws IOException {
+        if (binary && wide) throw new IllegalArgumentException("Binary files hold int values");
+        IntStreamWriter writer = null;
+        try {
+            writer = new IntStreamWriter(filename, binary, sorted);
+            for (long i = 0; i < count; i++) {
+                if (wide) writer.write(get(i));
+                else writer.write((int)get(i));
+            }
+        } finally {
+            try { writer.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    public long size() { return count; }
+    public boolean isWide() { return wide; }
+    public boolean isMapped() { return file != null; }
+    public long segmentValues() { return SEGMENT_BYTES >> shift; }
+
+    /**
+     * Returns segment <code>s</code>, a direct buffer in the native byte
+     * order holding the values from <code>s * segmentValues()</code>, so
+     * native code can work on the values at their address
+     */
+    public ByteBuffer segment(int s) {
+        return segments[s];
+    }
+
+    /**
+     * Returns the value at <code>index</code>, widened if the store
+     * holds int values
+     */
+    public long get(long index) {
+        long offset = index << shift;
+        ByteBuffer segment = segments[(int)(offset >>> SEGMENT_SHIFT)];
+        int position = (int)(offset & (SEGMENT_BYTES - 1));
+        return wide ? segment.getLong(position) : segment.getInt(position);
+    }
+
+    /**
+     * Sets the value at <code>index</code>, truncated if the store
+     * holds int values
+     */
+    public void set(long index, long value) {
+        long offset = index << shift;
+        ByteBuffer segment = segments[(int)(offset >>> SEGMENT_SHIFT)];
+        int position = (int)(offset & (SEGMENT_BYTES - 1));
+        if (wide) segment.putLong(position, value);
+        else segment.putInt(position, (int)value);
+    }
+
+    /**
+     * Appends a value, growing the store
+     */
+    public void append(long value) throws IOException {
+        if (((count + 1) << shift) > capacity) grow(count + 1);
+        set(count++, value);
+    }
+
+    /**
+     * Sets the number of values, growing the store if needed.  Values
+     * beyond the previous size are undefined.
+     */
+    public void setSize(long size) throws IOException {
+        if ((size << shift) > capacity) grow(size);
+        count = size;
+    }
+
+    /**
+     * Copies all values into <code>target</code>, a store of the same
+     * width, which is resized to match
+     * @param target store to copy into
+     * @throws IOException if the target cannot grow
+     */
+    public void copyTo(OffHeapStore target) throws IOException {
+        if (target.wide != wide) throw new IllegalArgumentException("Stores differ in width");
+        target.setSize(count);
+        long bytes = count << shift;
+        for (int s = 0; (long)s << SEGMENT_SHIFT < bytes; s++) {
+            int length = (int)Math.min(SEGMENT_BYTES, bytes - ((long)s << SEGMENT_SHIFT));
+            ByteBuffer from = segments[s].duplicate();
+            from.clear().limit(length);
+            ByteBuffer to = target.segments[s].duplicate();
+            to.clear();
+            to.put(from);
+        }
+    }
+
+    /**
+     * Grows the store to hold at least <code>size</code> values.  The
+     * last segment at least doubles, so appends take amortised
+     * constant time, and full segments are never moved again.
+     */
+    private void grow(long size) throws IOException {
+        long needed = size << shift;
+        int last = segments.length - 1;
+        long full = (last >= 0) ? ((long)last << SEGMENT_SHIFT) : 0;
+        if (last >= 0 && segments[last].capacity() < SEGMENT_BYTES) {
+            // Enlarge the partial last segment
+            long bytes = Math.min(SEGMENT_BYTES, Math.max(needed - full, 2L * segments[last].capacity()));
+            capacity -= segments[last].capacity();
+            segments[last] = resize(last, segments[last], (int)bytes);
+            capacity += bytes;
+        }
+        while (capacity < needed) {
+            int s = segments.length;
+            long remaining = needed - ((long)s << SEGMENT_SHIFT);
+            long bytes = Math.min(SEGMENT_BYTES, Math.max(MIN_SEGMENT_BYTES, remaining));
+            segments = Arrays.copyOf(segments, s + 1);
+            segments[s] = resize(s, null, (int)bytes);
+            capacity += bytes;
+        }
+    }
+
+    /**
+     * Returns segment <code>s</code> with <code>bytes</code> of
+     * capacity, keeping the contents of <code>old</code>
+     */
+    private ByteBuffer resize(int s, ByteBuffer old, int bytes) throws IOException {
+        ByteBuffer segment;
+        if (file != null) {
+            // A larger mapping of the same file region keeps its contents
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, (long)s << SEGMENT_SHIFT, bytes);
+        } else {
+            segment = ByteBuffer.allocateDirect(bytes);
+            if (old != null) {
+                ByteBuffer from = old.duplicate();
+                from.clear();
+                segment.put(from);
+                segment.clear();
+            }
+        }
+        return segment.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Releases the store, deleting its backing file if any
+     */
+    @Override
+    public void close() {
+        segments = new ByteBuffer[0];
+        capacity = 0;
+        count = 0;
+        if (file != null) {
+            try { raf.close(); } catch (IOException ex) {}
+            file.delete();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Object { values: " + count + ", wide: " + wide
+                + ", mapped: " + (file != null) + ", segments: " + segments.length + " }";
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits command line arguments into positional arguments and
+ * optional <code>--name</code> or <code>--name=value</code> flags,
+ * so that flags can be added to a program without changing the
+ * meaning of its existing positional arguments.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class Options {
+
+    private final List<String> positional = new ArrayList<String>();
+    private final Map<String, String> flags = new HashMap<String, String>();
+
+    public Options(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.length() > 2) {
+                int eq = arg.indexOf('=');
+                if (eq < 0) {
+                    flags.put(arg.substring(2), "");
+                } else {
+                    flags.put(arg.substring(2, eq), arg.substring(eq + 1));
+                }
+            } else {
+                positional.add(arg);
+            }
+        }
+    }
+
+    public List<String> getPositional() { return positional; }
+    public String get(int index) { return positional.get(index); }
+    public int size() { return positional.size(); }
+
+    public boolean has(String name) { return flags.containsKey(name); }
+
+    public String getString(String name, String def) {
+        String value = flags.get(name);
+        return (value == null || value.isEmpty()) ? def : value;
+    }
+
+    public int getInt(String name, int def) {
+        String value = getString(name, null);
+        return value == null ? def : Integer.parseInt(value);
+    }
+
+    public long getLong(String name, long def) {
+        String value = getString(name, null);
+        return value == null ? def : Long.parseLong(value);
+    }
+
+    public double getDouble(String name, double def) {
+        String value = getString(name, null);
+        return value == null ? def : Double.parseDouble(value);
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Object { positional: " + positional + ", flags: " + flags + " }";
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Subclass of IntSorter that sorts primitive values with a
+ * parallel merge sort on a <code>ForkJoinPool</code>.
+ * Both the recursive sorts and the merges are split across tasks,
+ * so the final merges of large arrays are not left to a single
+ * thread.  Below a sequential cutoff tasks sort and merge directly.
+ *
+ * Tasks run on the shared pool of <code>SortExecutor</code> and poll
+ * the cancel flag as they start, so a cancelled sort stops within
+ * one sequential cutoff's worth of work per thread.
+ *
+ * Data is merged back and forth between the values and one scratch
+ * array of equal size, so no copy back is needed after each merge.
+ * Every task counts its own memory accesses and returns them, and
+ * the total is added to <code>memHits</code> once the sort is done.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class ParallelMergeSort extends IntSorter {
+
+    private static final int SEQUENTIAL_CUTOFF = 1 << 13;      // Elements sorted or merged by one task
+    private static final int INSERTION_CUTOFF = 24;             // Elements insertion sorted
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public void setParallelism(int parallelism) { this.parallelism = Math.max(1, parallelism); }
+    public int getParallelism() { return parallelism; }
+
+    /**
+     * Sort primitive values using a parallel merge sort.
+     * Details about arguments can be found in <code>IntSorter</code>
+     */
+    @Override
+    protected void sort(int[]... values) {
+        if (values.length == 1) sortedInts = values[0];                                     memHits+=3;
+        if (sortedInts == null) return;                                                     memHits++;
+
+        int[] scratch = new int[sortedInts.length];                                         memHits+=2;
+        ForkJoinPool pool = SortExecutor.forkJoinPool(parallelism);
+        memHits += pool.invoke(new SortTask(sortedInts, scratch, 0, sortedInts.length, true));
+
+        // Sort complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    /**
+     * Sorts <code>a[lo, hi)</code>, leaving the result in <code>a</code>
+     * if <code>intoA</code> is set and in <code>b</code> otherwise
+     * @return number of memory accesses made
+     */
+    private static long sequentialSort(int[] a, int[] b, int lo, int hi, boolean intoA) {
+        if (hi - lo <= INSERTION_CUTOFF) {
+            long hits = 0;
+            int[] target = a;
+            if (!intoA) {
+                System.arraycopy(a, lo, b, lo, hi - lo);
+                target = b;
+                hits += 2L*(hi - lo);
+            }
+            return hits + insertionSort(target, lo, hi);
+        }
+        int mid = (lo + hi) >>> 1;
+        long hits = sequentialSort(a, b, lo, mid, !intoA) + sequentialSort(a, b, mid, hi, !intoA);
+        if (intoA) {
+            return hits + merge(b, lo, mid, b, mid, hi, a, lo);
+        }
+        return hits + merge(a, lo, mid, a, mid, hi, b, lo);
+    }
+
+    private static long insertionSort(int[] a, int lo, int hi) {
+        long hits = 0;
+        for (int i = lo + 1; i < hi; i++) {
+            int value = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > value) {
+                a[j + 1] = a[j];
+                j--;
+                hits += 3;
+            }
+            a[j + 1] = value;
+            hits += 4;
+        }
+        return hits;
+    }
+
+    /**
+     * Merges sorted <code>x[xlo, xhi)</code> and <code>y[ylo, yhi)</code>
+     * into <code>dst</code> starting at <code>dlo</code>
+     * @return number of memory accesses made
+     */
+    private static long merge(int[] x, int xlo, int xhi, int[] y, int ylo, int yhi, int[] dst, int dlo) {
+        long start = dlo;
+        while (xlo < xhi && ylo < yhi) {
+            dst[dlo++] = (y[ylo] < x[xlo]) ? y[ylo++] : x[xlo++];
+        }
+        long hits = 4*(dlo - start);
+        System.arraycopy(x, xlo, dst, dlo, xhi - xlo);
+        dlo += xhi - xlo;
+        System.arraycopy(y, ylo, dst, dlo, yhi - ylo);
+        hits += 2L*(xhi - xlo) + 2L*(yhi - ylo);
+        return hits;
+    }
+
+    /**
+     * Returns the first index in sorted <code>a[lo, hi)</code> whose
+     * value is greater than or equal to <code>key</code>
+     */
+    private static int lowerBound(int[] a, int lo, int hi, int key) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the first index in sorted <code>a[lo, hi)</code> whose
+     * value is greater than <code>key</code>
+     */
+    private static int upperBound(int[] a, int lo, int hi, int key) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Task sorting <code>a[lo, hi)</code> into <code>a</code> or <code>b</code>
+     */
+    private class SortTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a, b;
+        private final int lo, hi;
+        private final boolean intoA;
+
+        SortTask(int[] a, int[] b, int lo, int hi, boolean intoA) {
+            this.a = a; this.b = b; this.lo = lo; this.hi = hi; this.intoA = intoA;
+        }
+
+        @Override
+        protected Long compute() {
+            checkCancelled();
+            if (hi - lo <= SEQUENTIAL_CUTOFF) {
+                return sequentialSort(a, b, lo, hi, intoA);
+            }
+            int mid = (lo + hi) >>> 1;
+            SortTask left = new SortTask(a, b, lo, mid, !intoA);
+            SortTask right = new SortTask(a, b, mid, hi, !intoA);
+            left.fork();
+            long hits = right.compute() + left.join();
+
+            int[] src = intoA ? b : a;
+            int[] dst = intoA ? a : b;
+            return hits + new MergeTask(src, lo, mid, src, mid, hi, dst, lo).compute();
+        }
+    }
+
+    /**
+     * Task merging two sorted ranges, splitting the larger range at its
+     * midpoint and the other at the matching position by binary search.
+     * Values equal to the split value from <code>x</code> always precede
+     * those from <code>y</code>, so the merge is stable.
+     */
+    private class MergeTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] x, y, dst;
+        private final int xlo, xhi, ylo, yhi, dlo;
+
+        MergeTask(int[] x, int xlo, int xhi, int[] y, int ylo, int yhi, int[] dst, int dlo) {
+            this.x = x; this.xlo = xlo; this.xhi = xhi;
+            this.y = y; this.ylo = ylo; this.yhi = yhi;
+            this.dst = dst; this.dlo = dlo;
+        }
+
+        @Override
+        protected Long compute() {
+            checkCancelled();
+            int xn = xhi - xlo, yn = yhi - ylo;
+            if (xn + yn <= SEQUENTIAL_CUTOFF) {
+                return merge(x, xlo, xhi, y, ylo, yhi, dst, dlo);
+            }
+
+            int xmid, ymid;
+            if (xn >= yn) {
+                xmid = (xlo + xhi) >>> 1;
+                ymid = lowerBound(y, ylo, yhi, x[xmid]);
+            } else {
+                ymid = (ylo + yhi) >>> 1;
+                xmid = upperBound(x, xlo, xhi, y[ymid]);
+            }
+            long hits = 64 - Long.numberOfLeadingZeros(Math.max(xn, yn));
+            int dmid = dlo + (xmid - xlo) + (ymid - ylo);
+
+            MergeTask left = new MergeTask(x, xlo, xmid, y, ylo, ymid, dst, dlo);
+            MergeTask right = new MergeTask(x, xmid, xhi, y, ymid, yhi, dst, dmid);
+            left.fork();
+            return hits + right.compute() + left.join();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Subclass of IntSorter that sorts primitive values with a least
+ * significant digit radix sort over four 8-bit digits.  The sign bit
+ * of the most significant digit is flipped so negative values sort
+ * before positive ones.  Runs in O(n) time for any 32-bit ints.
+ *
+ * The histograms of all four digits are built in one pass, and a
+ * digit whose values are all equal is skipped, so bounded inputs take
+ * fewer passes.  Values are scattered back and forth between the
+ * values and one scratch array.
+ *
+ * Memory accesses are counted analytically per pass.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class RadixSort extends IntSorter {
+
+    private static final int DIGITS = 4;
+    private static final int RADIX = 256;
+    private static final int CHECK_INTERVAL = 1 << 16;          // Values processed between cancel checks
+
+    /**
+     * Sort primitive values using a radix sort.
+     * Details about arguments can be found in <code>IntSorter</code>
+     */
+    @Override
+    protected void sort(int[]... values) {
+        if (values.length == 1) sortedInts = values[0];                                     memHits+=3;
+        if (sortedInts == null) return;                                                     memHits++;
+        int n = sortedInts.length;
+
+        // Histogram every digit in one pass
+        int[][] counts = new int[DIGITS][RADIX];
+        for (int from = 0; from < n; from += CHECK_INTERVAL) {
+            checkCancelled();
+            int to = Math.min(n, from + CHECK_INTERVAL);
+            for (int i = from; i < to; i++) {
+                int key = sortedInts[i] ^ Integer.MIN_VALUE;
+                counts[0][key & 0xFF]++;
+                counts[1][(key >>> 8) & 0xFF]++;
+                counts[2][(key >>> 16) & 0xFF]++;
+                counts[3][key >>> 24]++;
+            }
+        }
+        memHits += 9L*n;                                                                    // read value, 4 count updates
+
+        int[] src = sortedInts;
+        int[] dst = null;
+        for (int d = 0; d < DIGITS; d++) {
+            int[] count = counts[d];
+            if (n == 0 || count[digit(src[0], d)] == n) continue;                          // All values share this digit
+            if (dst == null) dst = new int[n];
+
+            // Turn counts into starting offsets
+            int offset = 0;
+            for (int b = 0; b < RADIX; b++) {
+                int c = count[b];
+                count[b] = offset;
+                offset += c;
+            }
+
+            // Scatter values by digit, keeping the order of equal digits
+            int shift = 8*d;
+            for (int from = 0; from < n; from += CHECK_INTERVAL) {
+                checkCancelled();
+                int to = Math.min(n, from + CHECK_INTERVAL);
+                for (int i = from; i < to; i++) {
+                    int value = src[i];
+                    dst[count[((value ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++] = value;
+                }
+            }
+            memHits += 2L*RADIX + 4L*n;                                                     // offsets, read, count, write
+
+            int[] temp = src;
+            src = dst;
+            dst = temp;
+        }
+        if (src != sortedInts) {
+            System.arraycopy(src, 0, sortedInts, 0, n);
+            memHits += 2L*n;
+        }
+
+        // Sort complete. Set flag to true unless hardware failure
+        memHits++;
+        sortComplete = !virtualHardwareFailure();
+    }
+
+    private static int digit(int value, int d) {
+        return ((value ^ Integer.MIN_VALUE) >>> (8*d)) & 0xFF;
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Text file of records, one per line, each starting with an
+ * <code>int</code> key followed by an arbitrary payload.  Records are
+ * sorted without moving them or creating an object per record: every
+ * record is packed into one <code>long</code> holding its key in the
+ * high 32 bits and its line index in the low 32 bits, so the packed
+ * values sort by key, with ties in input order, using the primitive
+ * sorters of <code>OffHeapStore</code>.  The lines themselves are only
+ * copied once, in sorted order, by <code>write</code>.
+ *
+ * The multiset of records is summarised by a hash over the bytes of
+ * every whole record combined with its key, so an adjudicator can check
+ * that sorted entries still name exactly the original records.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class RecordFile {
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final byte[] data;                      // Contents of the file
+    private final int[] starts;                     // Offset of the first byte of each record
+    private final int[] ends;                       // Offset after the last byte of each record
+    private final int[] keys;                       // Key of each record
+    private final int size;                         // Number of records
+    private long hash;                              // Sum of the hashes of all records
+
+    private RecordFile(byte[] data, int[] starts, int[] ends, int[] keys, int size) {
+        this.data = data;
+        this.starts = starts;
+        this.ends = ends;
+        this.keys = keys;
+        this.size = size;
+        for (int r = 0; r < size; r++) {
+            hash += hash(pack(keys[r], r));
+        }
+    }
+
+    /**
+     * Reads and parses all records of a file.  Blank lines are skipped,
+     * and the key may be preceded by spaces and must be followed by a
+     * space, a tab or the end of its line.
+     * @param filename File to read
+     * @return the records
+     * @throws IOException if cannot read from file or a key is malformed
+     */
+    public static RecordFile read(String filename) throws IOException {
+        byte[] data = Files.readAllBytes(new File(filename).toPath());
+        int lines = 0;
+        for (byte b : data) {
+            if (b == '\n') lines++;
+        }
+        int[] starts = new int[lines + 1];
+        int[] ends = new int[lines + 1];
+        int[] keys = new int[lines + 1];
+
+        int n = 0;
+        int line = 0;
+        for (int start = 0; start < data.length; ) {
+            int end = start;
+            while (end < data.length && data[end] != '\n') end++;
+            int next = end + 1;
+            line++;
+            if (end > start && data[end - 1] == '\r') end--;
+
+            // Parse the key, accumulating negatively so that Integer.MIN_VALUE fits
+            int i = start;
+            while (i < end && data[i] == ' ') i++;
+            if (i < end) {
+                boolean negative = data[i] == '-';
+                if (negative || data[i] == '+') i++;
+                int digits = i;
+                long key = 0;
+                while (i < end && data[i] >= '0' && data[i] <= '9') {
+                    key = key*10 - (data[i++] - '0');
+                    if (key < Integer.MIN_VALUE) throw new IOException("Key out of range on line " + line);
+                }
+                if (i == digits || (i < end && data[i] != ' ' && data[i] != '\t')) {
+                    throw new IOException("Malformed key on line " + line);
+                }
+                if (!negative && key == Integer.MIN_VALUE) throw new IOException("Key out of range on line " + line);
+                starts[n] = start;
+                ends[n] = end;
+                keys[n] = (int)(negative ? key : -key);
+                n++;
+            }
+            start = next;
+        }
+
+        return new RecordFile(data, starts, ends, keys, n);
+    }
+
+    public int size() { return size; }
+    public long getHash() { return hash; }
+
+    /**
+     * Packs a key and a record index into one sortable value
+     */
+    public static long pack(int key, int index) {
+        return ((long)key << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    public static int key(long entry) { return (int)(entry >> 32); }
+    public static int index(long entry) { return (int)entry; }
+
+    /**
+     * Returns a store of the packed key and index of every record, in
+     * input order
+     * @param mapped true to keep the store in a mapped temporary file
+     * @return the store
+     * @throws IOException if the store cannot be created
+     */
+    public OffHeapStore toStore(boolean mapped) throws IOException {
+        OffHeapStore store = mapped ? OffHeapStore.mapped(true, null) : OffHeapStore.direct(true);
+        store.setSize(size);
+        for (int r = 0; r < size; r++) {
+            store.set(r, pack(keys[r], r));
+        }
+        return store;
+    }
+
+    /**
+     * Returns true if a packed entry names a record of this file
+     */
+    public boolean contains(long entry) {
+        int index = index(entry);
+        return index >= 0 && index < size;
+    }
+
+    /**
+     * Hashes the whole record named by a packed entry together with
+     * the key of the entry
+     * @param entry packed key and index of a record in this file
+     * @return the hash of the entry
+     */
+    public long hash(long entry) {
+        int index = index(entry);
+        long h = FNV_OFFSET;
+        for (int i = starts[index]; i < ends[index]; i++) {
+            h = (h ^ (data[i] & 0xFF)) * FNV_PRIME;
+        }
+        return SortedCheck.mix(h + key(entry));
+    }
+
+    /**
+     * Writes the records named by the entries of <code>sorted</code>,
+     * in their order, one per line
+     * @param filename File you wish to write to
+     * @param sorted Store of packed entries
+     * @throws IOException if cannot write to file
+     */
+    public void write(String filename, OffHeapStore sorted) throws IOException {
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16);
+            for (long i = 0; i < sorted.size(); i++) {
+                int index = index(sorted.get(i));
+                out.write(data, starts[index], ends[index] - starts[index]);
+                out.write('\n');
+            }
+        } finally {
+            try { out.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Object { records: " + size + ", bytes: " + data.length + " }";
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Monte Carlo experiment on the reliability of the recovery block.
+ * Runs many in-memory recovery-block trials, in parallel across cores,
+ * for every combination of primary and backup failure probability,
+ * timeout and input size, and writes the success rate, the mean and
+ * tail latency and how often each alternate produced the accepted
+ * result to a CSV file.
+ *
+ * Each trial gives its sorters a <code>SplittableRandom</code> seeded
+ * from the experiment seed, the configuration and the trial number, so
+ * a sweep is reproducible whatever the number of threads, and trials
+ * never contend on a shared generator.  The input of each size is
+ * generated once, and every thread sorts copies of it in a buffer it
+ * reuses across trials.
+ * The program can be run from the command line as follows:
+ *
+ *      java ReliabilityExperiment [options]
+ *
+ * Where the options are:
+ *
+ *      --primFail=p,...        primary failure probabilities, default 0,1e-8,1e-7
+ *      --backFail=p,...        backup failure probabilities, default 0,1e-8,1e-7
+ *      --timeout=ms,...        timeouts of each alternate, default 1000
+ *      --sizes=n,...           input sizes, default 10000,100000
+ *      --trials=n              trials per configuration, default 1000
+ *      --primary=class         primary sorter, default DaryHeapSort
+ *      --backups=class,...     backup sorters, default RadixSort,ParallelMergeSort
+ *      --dist=d                input distribution of SortBenchmark, default random
+ *      --seed=s                experiment seed, default 1
+ *      --threads=n             trials run at once, default number of processors
+ *      --csv=file              results file, default reliability.csv
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class ReliabilityExperiment {
+
+    private final String[] sortClasses;
+    private final List<Constructor<? extends IntSorter>> constructors = new ArrayList<Constructor<? extends IntSorter>>();
+    private final ThreadLocal<int[]> buffers = new ThreadLocal<int[]>();
+
+    /**
+     * Creates an experiment on the recovery block made of the given
+     * sorters, primary first
+     * @param sortClasses names of <code>IntSorter</code> classes
+     * @throws ReflectiveOperationException if a sorter class cannot be used
+     */
+    public ReliabilityExperiment(String[] sortClasses) throws ReflectiveOperationException {
+        this.sortClasses = sortClasses.clone();
+        for (String sortClass : sortClasses) {
+            constructors.add(Class.forName(sortClass).asSubclass(IntSorter.class).getConstructor());
+        }
+    }
+
+    /**
+     * Result of one configuration of the sweep
+     */
+    public static class Result {
+        public int size;
+        public double primFail, backFail;
+        public long timeout;
+        public long[] latencies;        // Nanoseconds of each trial
+        public int[] wins;              // Trials won by each alternate
+        public int failures;            // Trials no alternate won
+        public int timeouts;            // Alternates timed out, over all trials
+
+        public double getSuccessRate() {
+            return latencies.length > 0 ? 1 - (double)failures / latencies.length : 0;
+        }
+    }
+
+    /**
+     * Runs one trial of the recovery block on <code>input</code>
+     * @param input values to sort, never modified
+     * @param result configuration the trial belongs to
+     * @param random generator of the trial's virtual failures
+     * @return index of the alternate whose result was accepted, -1 if none
+     */
+    int runTrial(int[] input, Result result, SplittableRandom random) throws ReflectiveOperationException {
+        int[] buffer = buffers.get();
+        if (buffer == null || buffer.length != input.length) {
+            buffer = new int[input.length];
+            buffers.set(buffer);
+        }
+
+        for (int i = 0; i < constructors.size(); i++) {
+            IntSorter sorter = constructors.get(i).newInstance();
+            if (sorter instanceof ParallelMergeSort) ((ParallelMergeSort)sorter).setParallelism(1);
+            sorter.setValues(input, buffer);
+            sorter.setFailureProbability(i == 0 ? result.primFail : result.backFail);
+            sorter.setRandom(random);
+
+            ScheduledFuture<?> watchdog = SortExecutor.watch(sorter, result.timeout);
+            try {
+                sorter.run();
+            } catch (RuntimeException | LinkageError ex) {
+                // An alternate that throws has failed; the recovery block moves on
+                continue;
+            } finally {
+                watchdog.cancel(false);
+            }
+            if (sorter.isCancelled()) {
+                synchronized (result) { result.timeouts++; }
+            } else if (sorter.didFinish() && SortedCheck.checkSorted(input, sorter.getSortedInts(), true, 1)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Runs the trials of one configuration on <code>pool</code> and
+     * waits for them to end
+     * @param input values to sort
+     * @param result configuration, filled in with its results
+     * @param trials number of trials
+     * @param seed seed of the configuration
+     * @param pool executor running the trials
+     * @throws Exception if a trial fails
+     */
+    void runTrials(final int[] input, final Result result, int trials, long seed, ExecutorService pool)
+            throws Exception {
+        result.latencies = new long[trials];
+        result.wins = new int[sortClasses.length];
+        final int[] winners = new int[trials];
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+
+        for (int t = 0; t < trials; t++) {
+            final int trial = t;
+            final SplittableRandom random = new SplittableRandom(SortedCheck.mix(seed + t));
+            tasks.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    long start = System.nanoTime();
+                    winners[trial] = runTrial(input, result, random);
+                    result.latencies[trial] = System.nanoTime() - start;
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> task : tasks) task.get();
+
+        for (int winner : winners) {
+            if (winner < 0) result.failures++;
+            else result.wins[winner]++;
+        }
+        Arrays.sort(result.latencies);
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 1 && args[0].equals("--help")) {
+            printSyntax();
+            return;
+        }
+        Options options = new Options(args);
+        String[] primFails = options.getString("primFail", "0,1e-8,1e-7").split(",");
+        String[] backFails = options.getString("backFail", "0,1e-8,1e-7").split(",");
+        String[] timeouts = options.getString("timeout", "1000").split(",");
+        String[] sizes = options.getString("sizes", "10000,100000").split(",");
+        int trials = options.getInt("trials", 1000);
+        long seed = options.getLong("seed", 1);
+        String csvFile = options.getString("csv", "reliability.csv");
+        List<String> sortClasses = new ArrayList<String>();
+        sortClasses.add(options.getString("primary", "DaryHeapSort"));
+        sortClasses.addAll(Arrays.asList(options.getString("backups", "RadixSort,ParallelMergeSort").split(",")));
+
+        ExecutorService pool = Executors.newFixedThreadPool(
+                options.getInt("threads", Runtime.getRuntime().availableProcessors()));
+        PrintWriter csv = null;
+        try {
+            ReliabilityExperiment experiment = new ReliabilityExperiment(sortClasses.toArray(new String[0]));
+            csv = new PrintWriter(new FileWriter(csvFile));
+            StringBuilder header = new StringBuilder(
+                    "size,prim_fail,back_fail,timeout_ms,trials,success_rate,mean_ms,p50_ms,p95_ms,p99_ms,max_ms,timeouts");
+            for (int i = 0; i < sortClasses.size(); i++) {
+                header.append(",won_").append(i).append('_').append(sortClasses.get(i));
+            }
+            csv.println(header.append(",all_failed"));
+
+            int configuration = 0;
+            for (String size : sizes) {
+                int[] input = SortBenchmark.generate(options.getString("dist", "random"),
+                        Integer.parseInt(size.trim()), seed);
+                for (String timeout : timeouts) {
+                    for (String primFail : primFails) {
+                        for (String backFail : backFails) {
+                            Result result = new Result();
+                            result.size = input.length;
+                            result.timeout = Long.parseLong(timeout.trim());
+                            result.primFail = Double.parseDouble(primFail.trim());
+                            result.backFail = Double.parseDouble(backFail.trim());
+                            experiment.runTrials(input, result, trials,
+                                    seed + (long)(configuration++) * trials, pool);
+                            csv.println(toCsv(result));
+                            csv.flush();
+                            System.out.println(toCsv(result));
+                        }
+                    }
+                }
+            }
+        } catch (ReflectiveOperationException ex) {
+            System.out.println("Could not create sorter: " + ex);
+        } catch (IOException ex) {
+            System.out.println("Could not write to file " + csvFile);
+        } catch (Exception ex) {
+            System.out.println("Trial failed: " + ex);
+        } finally {
+            pool.shutdown();
+            if (csv != null) csv.close();
+        }
+    }
+
+    private static String toCsv(Result result) {
+        long[] l = result.latencies;
+        double mean = 0;
+        for (long latency : l) mean += latency;
+        mean = l.length > 0 ? mean / l.length / 1e6 : 0;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(result.size).append(',').append(result.primFail).append(',').append(result.backFail)
+                .append(',').append(result.timeout).append(',').append(l.length)
+                .append(',').append(result.getSuccessRate()).append(',').append(mean)
+                .append(',').append(percentile(l, 0.50)).append(',').append(percentile(l, 0.95))
+                .append(',').append(percentile(l, 0.99)).append(',').append(percentile(l, 1.0))
+                .append(',').append(result.timeouts);
+        for (int win : result.wins) sb.append(',').append(win);
+        return sb.append(',').append(result.failures).toString();
+    }
+
+    /**
+     * Returns the <code>q</code> quantile of sorted latencies in milliseconds
+     */
+    private static double percentile(long[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        int index = (int)Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    /**
+     * Prints the proper syntax for running ReliabilityExperiment
+     */
+    private static void printSyntax() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("ReliabilityExperiment runs recovery-block trials over a sweep of settings.\n\n")
+                .append("\tjava ReliabilityExperiment [options]\n\n")
+                .append("Options:\n\n")
+                .append("\t--primFail=p,... = primary failure probabilities (default 0,1e-8,1e-7)\n")
+                .append("\t--backFail=p,... = backup failure probabilities (default 0,1e-8,1e-7)\n")
+                .append("\t--timeout=ms,... = timeouts of each alternate (default 1000)\n")
+                .append("\t--sizes=n,... = input sizes (default 10000,100000)\n")
+                .append("\t--trials=n = trials per configuration (default 1000)\n")
+                .append("\t--primary=class = primary sorter (default DaryHeapSort)\n")
+                .append("\t--backups=class,... = backup sorters (default RadixSort,ParallelMergeSort)\n")
+                .append("\t--dist=d = random, sorted, reversed or fewunique input (default random)\n")
+                .append("\t--seed=s = experiment seed (default 1)\n")
+                .append("\t--threads=n = trials run at once (default number of processors)\n")
+                .append("\t--csv=file = results file (default reliability.csv)\n");
+        System.out.println(sb.toString());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Object { sorters: " + Arrays.toString(sortClasses) + " }";
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.Arrays;
+
+/**
+ * An IntSorter that selects only the values at given ranks of the
+ * sorted order, such as the smallest or largest k values or a few
+ * percentiles, without sorting all of its input.  The ranks are
+ * positions in the ascending order of the input, and the selected
+ * values are left in <code>sortedInts</code> in ascending rank order.
+ * The input is never modified, so alternates can share it without a
+ * checkpoint.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public abstract class SelectionSorter extends IntSorter {
+
+    protected int[] source;                         // Values selected from, never modified
+    protected int[] ranks;                          // Ascending distinct ranks to select
+
+    /**
+     * Sets the values to select from, which are not copied, and the
+     * ranks to select
+     * @param values Values to select from
+     * @param ranks Ascending distinct ranks in <code>[0, values.length)</code>
+     */
+    public void setSelection(int[] values, int[] ranks) {
+        this.source = values;
+        this.ranks = ranks.clone();
+    }
+
+    public int[] getRanks() { return ranks.clone(); }
+
+    /**
+     * Returns the ranks of the <code>k</code> smallest of
+     * <code>n</code> values
+     */
+    public static int[] smallestRanks(int n, int k) {
+        int[] ranks = new int[Math.max(0, Math.min(k, n))];
+        for (int i = 0; i < ranks.length; i++) ranks[i] = i;
+        return ranks;
+    }
+
+    /**
+     * Returns the ranks of the <code>k</code> largest of
+     * <code>n</code> values
+     */
+    public static int[] largestRanks(int n, int k) {
+        int[] ranks = new int[Math.max(0, Math.min(k, n))];
+        for (int i = 0; i < ranks.length; i++) ranks[i] = n - ranks.length + i;
+        return ranks;
+    }
+
+    /**
+     * Returns the nearest ranks of the given percentiles of
+     * <code>n</code> values, ascending and without duplicates
+     * @param n number of values
+     * @param percentiles percentiles between 0 and 100
+     */
+    public static int[] percentileRanks(int n, double[] percentiles) {
+        if (n == 0) return new int[0];
+        int[] ranks = new int[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (percentiles[i] < 0 || percentiles[i] > 100) {
+                throw new IllegalArgumentException("Percentile " + percentiles[i] + " not between 0 and 100");
+            }
+            int rank = (int)Math.ceil(percentiles[i] / 100 * n) - 1;
+            ranks[i] = Math.max(0, Math.min(n - 1, rank));
+        }
+        Arrays.sort(ranks);
+        int distinct = 0;
+        for (int i = 0; i < ranks.length; i++) {
+            if (distinct == 0 || ranks[i] != ranks[distinct - 1]) ranks[distinct++] = ranks[i];
+        }
+        return Arrays.copyOf(ranks, distinct);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        String NEW_LINE = System.getProperty("line.separator");
+
+        result.append(this.getClass().getName() + " Object {" + NEW_LINE);
+        result.append("Values size: ");
+        result.append((source != null ? source.length : "0") + NEW_LINE);
+        result.append("Ranks selected: " + (ranks != null ? ranks.length : 0) + NEW_LINE);
+        result.append("Failure probability: " + failureProbability + NEW_LINE);
+        result.append("Sort completed: " + sortComplete + NEW_LINE);
+        result.append("}");
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,362 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Reproducible performance measurements for the sorters, the
+ * adjudicator, file I/O and the full <code>DataSorter</code> recovery
+ * flow.  Every benchmark is run over a matrix of input sizes, input
+ * distributions and failure probabilities, with warmup iterations
+ * followed by measured iterations, and reports time per operation,
+ * throughput, bytes allocated per operation and GC activity, so both
+ * throughput and allocation regressions show up.
+ * The program can be run from the command line as follows:
+ *
+ *      java -Xmx8g SortBenchmark [options]
+ *
+ * Where the options are:
+ *
+ *      --benchmarks=a,b,...    benchmarks to run, default all of
+ *                              IntHeapSort, ParallelMergeSort, IntCInsertionSort,
+ *                              HeapSort, SortedCheck, SortedCheckParallel,
+ *                              readIntsFromFile, writeIntsToFile,
+ *                              readBinary, writeBinary, DataSorter
+ *      --sizes=n,...           input sizes, default 1000,100000,10000000,100000000
+ *      --dists=d,...           random, sorted, reversed and/or fewunique
+ *      --fail=p,...            failure probabilities of the sorters, default 0,1e-9
+ *      --warmup=n              warmup iterations per case, default 3
+ *      --iterations=n          measured iterations per case, default 5
+ *      --seed=s                seed of the generated inputs, default 42
+ *      --csv=file              also write the results to a CSV file
+ *
+ * Allocation is measured across all live threads with the HotSpot
+ * per-thread allocation counters, the same source as JMH's
+ * <code>-prof gc</code>, so allocations of pooled worker threads are
+ * included.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class SortBenchmark {
+
+    private static final String[] ALL_BENCHMARKS = new String[] {
+            "IntHeapSort", "ParallelMergeSort", "IntCInsertionSort", "HeapSort",
+            "SortedCheck", "SortedCheckParallel", "readIntsFromFile", "writeIntsToFile",
+            "readBinary", "writeBinary", "DataSorter" };
+    private static final int QUADRATIC_LIMIT = 100000;     // Largest input for O(n^2) sorts
+    private static final int BOXED_LIMIT = 10000000;       // Largest input for boxed sorts
+
+    /**
+     * One benchmarked operation.  <code>setup</code> is not measured
+     * and runs before every invocation of <code>run</code>.
+     */
+    private abstract static class Operation {
+        void setup(int[] input) throws Exception {}
+        abstract void run() throws Exception;
+        void tearDown() {}
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 1 && args[0].equals("--help")) {
+            printSyntax();
+            return;
+        }
+        Options options = new Options(args);
+        String[] benchmarks = options.getString("benchmarks", join(ALL_BENCHMARKS)).split(",");
+        String[] sizes = options.getString("sizes", "1000,100000,10000000,100000000").split(",");
+        String[] dists = options.getString("dists", "random,sorted,reversed,fewunique").split(",");
+        String[] fails = options.getString("fail", "0,1e-9").split(",");
+        int warmup = options.getInt("warmup", 3);
+        int iterations = options.getInt("iterations", 5);
+        long seed = options.getLong("seed", 42);
+
+        PrintWriter csv = null;
+        try {
+            if (options.has("csv")) {
+                csv = new PrintWriter(new FileWriter(options.getString("csv", "bench.csv")));
+                csv.println("benchmark,dist,size,fail,ms_per_op,ms_stddev,melem_per_s,alloc_bytes_per_op,alloc_bytes_per_elem,gc_count,gc_ms");
+            }
+            System.out.println(String.format("%-20s %-10s %10s %7s %12s %10s %12s %14s %10s %8s",
+                    "benchmark", "dist", "size", "fail", "ms/op", "+-", "Melem/s", "alloc B/op", "B/elem", "gc"));
+
+            for (String size : sizes) {
+                int n = Integer.parseInt(size.trim());
+                for (String dist : dists) {
+                    int[] input = generate(dist.trim(), n, seed);
+                    for (String benchmark : benchmarks) {
+                        for (String fail : fails) {
+                            double failure = Double.parseDouble(fail.trim());
+                            if (failure != 0 && !usesFailure(benchmark)) continue;
+                            String skip = skipReason(benchmark.trim(), n);
+                            if (skip != null) {
+                                System.out.println(String.format("%-20s %-10s %10d %7s skipped: %s",
+                                        benchmark, dist, n, fail, skip));
+                                continue;
+                            }
+                            measure(benchmark.trim(), dist.trim(), input, failure, warmup, iterations, csv);
+                        }
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            System.out.println("Could not write results: " + ex.getMessage());
+        } finally {
+            if (csv != null) csv.close();
+        }
+    }
+
+    /**
+     * Runs one case of the benchmark matrix and reports its results
+     */
+    private static void measure(String benchmark, String dist, int[] input, double failure,
+                                int warmup, int iterations, PrintWriter csv) {
+        Operation operation = create(benchmark, failure);
+        double[] times = new double[iterations];
+        long allocated = 0, gcCount = 0, gcTime = 0;
+
+        try {
+            for (int i = 0; i < warmup + iterations; i++) {
+                operation.setup(input);
+                System.gc();
+                long alloc0 = allocatedBytes();
+                long gc0 = gcCount(), gct0 = gcTime();
+                long start = System.nanoTime();
+                operation.run();
+                long elapsed = System.nanoTime() - start;
+                if (i >= warmup) {
+                    times[i - warmup] = elapsed / 1e6;
+                    allocated += allocatedBytes() - alloc0;
+                    gcCount += gcCount() - gc0;
+                    gcTime += gcTime() - gct0;
+                }
+            }
+        } catch (Throwable ex) {
+            System.out.println(String.format("%-20s %-10s %10d %7s failed: %s",
+                    benchmark, dist, input.length, failure, ex));
+            return;
+        } finally {
+            operation.tearDown();
+        }
+
+        double mean = 0;
+        for (double t : times) mean += t;
+        mean /= iterations;
+        double variance = 0;
+        for (double t : times) variance += (t - mean) * (t - mean);
+        double stddev = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        double throughput = input.length / (mean * 1e3);
+        long allocPerOp = allocated / iterations;
+        double allocPerElem = input.length > 0 ? (double)allocPerOp / input.length : 0;
+
+        System.out.println(String.format("%-20s %-10s %10d %7s %12.3f %10.3f %12.2f %14d %10.2f %8s",
+                benchmark, dist, input.length, failure, mean, stddev, throughput, allocPerOp, allocPerElem,
+                gcCount + "/" + gcTime + "ms"));
+        if (csv != null) {
+            csv.println(benchmark + "," + dist + "," + input.length + "," + failure + "," + mean + "," + stddev
+                    + "," + throughput + "," + allocPerOp + "," + allocPerElem + "," + gcCount + "," + gcTime);
+            csv.flush();
+        }
+    }
+
+    /**
+     * Creates the operation measured by the named benchmark
+     */
+    private static Operation create(final String benchmark, final double failure) {
+        if (benchmark.equals("HeapSort")) {
+            return new Operation() {
+                HeapSort sorter;
+                @Override void setup(int[] input) {
+                    Integer[] boxed = new Integer[input.length];
+                    for (int i = 0; i < input.length; i++) boxed[i] = input[i];
+                    sorter = new HeapSort();
+                    sorter.setValues(boxed);
+                    sorter.setFailureProbability(failure);
+                }
+                @Override void run() { sorter.run(); }
+            };
+        }
+        if (benchmark.equals("SortedCheck") || benchmark.equals("SortedCheckParallel")) {
+            return new Operation() {
+                int[] original, sorted;
+                @Override void setup(int[] input) {
+                    if (original != input) {
+                        original = input;
+                        sorted = input.clone();
+                        Arrays.sort(sorted);
+                    }
+                }
+                @Override void run() {
+                    int parallelism = benchmark.equals("SortedCheck") ? 1 : Runtime.getRuntime().availableProcessors();
+                    if (!SortedCheck.checkSorted(original, sorted, true, parallelism)) {
+                        throw new IllegalStateException("Adjudicator rejected a sorted array");
+                    }
+                }
+            };
+        }
+        if (benchmark.startsWith("read") || benchmark.startsWith("write") || benchmark.equals("DataSorter")) {
+            return new FileOperation(benchmark, failure);
+        }
+        // Any other name is an IntSorter class
+        return new Operation() {
+            IntSorter sorter;
+            @Override void setup(int[] input) throws Exception {
+                sorter = (IntSorter)Class.forName(benchmark).getConstructor().newInstance();
+                sorter.setValues(input);
+                sorter.setFailureProbability(failure);
+            }
+            @Override void run() { sorter.run(); }
+        };
+    }
+
+    /**
+     * Operations on files.  The input file of each case is written
+     * once, during the first setup.
+     */
+    private static class FileOperation extends Operation {
+        private final String benchmark;
+        private final double failure;
+        private int[] values;
+        private File inFile, outFile;
+
+        FileOperation(String benchmark, double failure) {
+            this.benchmark = benchmark;
+            this.failure = failure;
+        }
+
+        @Override
+        void setup(int[] input) throws IOException {
+            if (values != input) {
+                values = input;
+                boolean binary = benchmark.endsWith("Binary");
+                inFile = File.createTempFile("bench", binary ? ".bin" : ".txt");
+                outFile = File.createTempFile("bench", binary ? ".bin" : ".txt");
+                FileHelper.writeIntsToFile(inFile.getPath(), input, binary, false);
+            }
+        }
+
+        @Override
+        void run() throws IOException {
+            if (benchmark.startsWith("read")) {
+                FileHelper.readIntsFromFile(inFile.getPath());
+            } else if (benchmark.startsWith("write")) {
+                FileHelper.writeIntsToFile(outFile.getPath(), values, benchmark.endsWith("Binary"), false);
+            } else {
+                Options options = new Options(new String[] {
+                        inFile.getPath(), outFile.getPath(), String.valueOf(failure), String.valueOf(failure),
+                        String.valueOf(Integer.MAX_VALUE / 2) });
+                DataSorter.sort(options);
+            }
+        }
+
+        @Override
+        void tearDown() {
+            if (inFile != null) inFile.delete();
+            if (outFile != null) outFile.delete();
+        }
+    }
+
+    /**
+     * Generates <code>n</code> values of the named distribution
+     */
+    static int[] generate(String dist, int n, long seed) {
+        Random random = new Random(seed);
+        int[] values = new int[n];
+        if (dist.equals("sorted") || dist.equals("reversed")) {
+            for (int i = 0; i < n; i++) values[i] = random.nextInt();
+            Arrays.sort(values);
+            if (dist.equals("reversed")) {
+                for (int i = 0, j = n - 1; i < j; i++, j--) {
+                    int temp = values[i];
+                    values[i] = values[j];
+                    values[j] = temp;
+                }
+            }
+        } else if (dist.equals("fewunique")) {
+            for (int i = 0; i < n; i++) values[i] = random.nextInt(16);
+        } else if (dist.equals("random")) {
+            for (int i = 0; i < n; i++) values[i] = random.nextInt();
+        } else {
+            throw new IllegalArgumentException("Unknown distribution " + dist);
+        }
+        return values;
+    }
+
+    private static boolean usesFailure(String benchmark) {
+        return !benchmark.startsWith("SortedCheck") && !benchmark.startsWith("read") && !benchmark.startsWith("write");
+    }
+
+    private static String skipReason(String benchmark, int n) {
+        if (benchmark.equals("IntCInsertionSort") && n > QUADRATIC_LIMIT) return "O(n^2) above " + QUADRATIC_LIMIT;
+        if (benchmark.equals("HeapSort") && n > BOXED_LIMIT) return "boxed input above " + BOXED_LIMIT;
+        return null;
+    }
+
+    /**
+     * Total bytes allocated so far by all live threads, or 0 if the
+     * JVM does not provide per-thread allocation counters
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean)threads;
+        long total = 0;
+        for (long bytes : hotspot.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static String join(String[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Prints the proper syntax for running SortBenchmark
+     */
+    private static void printSyntax() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SortBenchmark measures the sorters, adjudicator, file I/O and recovery flow.\n\n")
+                .append("\tjava -Xmx8g SortBenchmark [options]\n\n")
+                .append("Options:\n\n")
+                .append("\t--benchmarks=a,b,... = benchmarks to run (default all)\n")
+                .append("\t--sizes=n,... = input sizes (default 1000,100000,10000000,100000000)\n")
+                .append("\t--dists=d,... = random, sorted, reversed, fewunique\n")
+                .append("\t--fail=p,... = sorter failure probabilities (default 0,1e-9)\n")
+                .append("\t--warmup=n = warmup iterations per case (default 3)\n")
+                .append("\t--iterations=n = measured iterations per case (default 5)\n")
+                .append("\t--seed=s = seed of generated inputs (default 42)\n")
+                .append("\t--csv=file = also write results as CSV\n");
+        System.out.println(sb.toString());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Class Object";
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * Thrown inside a sorter when its sort has been cancelled,
+ * unwinding the sort from wherever it polled the cancel flag
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class SortCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SortCancelledException() {
+        super("Sort cancelled");
+    }
+}
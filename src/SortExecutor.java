@@ -0,0 +1,117 @@
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared execution resources for sorters.  Sorters run as tasks on
+ * one reusable pool of worker threads, and every watchdog deadline
+ * is scheduled on one shared scheduler thread, so no thread or
+ * timer is created per sorting attempt.  All threads are daemons
+ * and never keep the JVM alive.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class SortExecutor {
+
+    private static final ExecutorService workers = Executors.newCachedThreadPool(daemonFactory("sorter"));
+    private static final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(daemonFactory("watchdog"));
+    private static final Map<Integer, ForkJoinPool> forkJoinPools = new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+    /**
+     * Runs <code>task</code> on the shared worker pool
+     * @param task Sorter or other task to run
+     * @return Future completing when the task ends
+     */
+    public static Future<?> submit(Runnable task) {
+        return workers.submit(task);
+    }
+
+    /**
+     * Starts a watchdog that cancels <code>sorter</code> once
+     * <code>timeout</code> milliseconds have passed
+     * @param sorter Sorter to cancel
+     * @param timeout milliseconds before the sorter is cancelled
+     * @return handle to cancel the watchdog once the sorter ends
+     */
+    public static ScheduledFuture<?> watch(Sorter sorter, long timeout) {
+        return scheduler.schedule(new Watchdog(sorter), timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the shared fork/join pool of the given parallelism,
+     * creating it on first use
+     * @param parallelism number of worker threads of the pool
+     * @return shared pool
+     */
+    public static ForkJoinPool forkJoinPool(int parallelism) {
+        ForkJoinPool pool = forkJoinPools.get(parallelism);
+        if (pool == null) {
+            synchronized (forkJoinPools) {
+                pool = forkJoinPools.get(parallelism);
+                if (pool == null) {
+                    pool = new ForkJoinPool(parallelism);
+                    forkJoinPools.put(parallelism, pool);
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Creates an executor for blocking I/O tasks that starts a thread
+     * per task.  Virtual threads are used when the JVM provides them,
+     * and daemon platform threads otherwise.
+     * @return new executor, to be shut down by the caller
+     */
+    public static ExecutorService newIoExecutor() {
+        try {
+            // Looked up reflectively so the code still runs on JVMs before Java 21
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool(daemonFactory("io"));
+        }
+    }
+
+    /**
+     * Creates a fixed pool of daemon threads that queues at most
+     * <code>queueSize</code> waiting tasks and rejects any beyond that
+     * @param name prefix of the thread names
+     * @param threads number of threads
+     * @param queueSize maximum number of waiting tasks
+     * @return new executor, to be shut down by the caller
+     */
+    public static ThreadPoolExecutor newBoundedPool(String name, int threads, int queueSize) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), daemonFactory(name));
+    }
+
+    private static ThreadFactory daemonFactory(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Class Object";
+    }
+}
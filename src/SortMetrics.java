@@ -0,0 +1,212 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records the outcome of every attempt of a recovery block: which
+ * sorter ran and in which role, its wall time and memory accesses, the
+ * time spent adjudicating its result and whether it was accepted,
+ * rejected, failed or timed out.
+ *
+ * Totals and latency histograms are exported over JMX through
+ * <code>SortMetricsMBean</code>, and the individual attempts can be
+ * appended to a CSV file with <code>writeCsv</code>.  One instance is
+ * shared by the whole process, but attempts waiting for
+ * <code>writeCsv</code> are kept per job, so concurrent jobs each
+ * write only their own attempts.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class SortMetrics implements SortMetricsMBean {
+
+    public enum Outcome { ACCEPTED, REJECTED, FAILED, TIMEOUT }
+
+    private static final int BUCKETS = 40;                  // Histogram buckets, up to 2^39 us
+    private static final int MAX_PENDING = 10000;           // Attempts kept per job for writeCsv
+
+    private static SortMetrics instance;
+
+    private long attempts, accepted, rejected, failed, timeouts;
+    private long memoryAccesses;
+    private long sortNanos, maxSortNanos;
+    private long adjudications, adjudicationNanos, maxAdjudicationNanos;
+    private final long[] sortHistogram = new long[BUCKETS];
+    private final long[] adjudicationHistogram = new long[BUCKETS];
+    private final Map<Object, Deque<String>> pending = new HashMap<Object, Deque<String>>();    // By job
+
+    private SortMetrics() {}
+
+    /**
+     * Returns the process-wide metrics, registering them with the
+     * platform MBean server on first use
+     * @return the shared <code>SortMetrics</code>
+     */
+    public static synchronized SortMetrics getInstance() {
+        if (instance == null) {
+            instance = new SortMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(instance, new ObjectName("FaultTolerance:type=SortMetrics"));
+            } catch (JMException ex) {
+                System.out.println("Could not register metrics MBean: " + ex.getMessage());
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Records one attempt of a recovery block that belongs to no job
+     * in particular.  Details about arguments can be found in
+     * <code>record(Object, Sorter, String, long, Boolean)</code>
+     */
+    public Outcome record(Sorter sorter, String role, long adjudicationNanos, Boolean verdict) {
+        return record(null, sorter, role, adjudicationNanos, verdict);
+    }
+
+    /**
+     * Records one attempt of a recovery block.  An attempt whose result
+     * was not adjudicated is a timeout if the sorter was cancelled and a
+     * failure otherwise.
+     * @param job job the attempt belongs to, which receives its CSV row
+     * @param sorter sorter that made the attempt, after it has run
+     * @param role role of the attempt, e.g. primary or backup
+     * @param adjudicationNanos time spent adjudicating the result
+     * @param verdict verdict of the adjudicator, null if not adjudicated
+     * @return outcome of the attempt
+     */
+    public synchronized Outcome record(Object job, Sorter sorter, String role, long adjudicationNanos,
+                                       Boolean verdict) {
+        Outcome outcome;
+        if (verdict != null) outcome = verdict ? Outcome.ACCEPTED : Outcome.REJECTED;
+        else outcome = sorter.isCancelled() ? Outcome.TIMEOUT : Outcome.FAILED;
+
+        attempts++;
+        switch (outcome) {
+            case ACCEPTED: accepted++; break;
+            case REJECTED: rejected++; break;
+            case TIMEOUT: timeouts++; break;
+            default: failed++; break;
+        }
+        memoryAccesses += sorter.getMemHits();
+
+        long wallTime = Math.max(0, sorter.getWallTime());
+        sortNanos += wallTime;
+        maxSortNanos = Math.max(maxSortNanos, wallTime);
+        sortHistogram[bucket(wallTime)]++;
+        if (verdict != null) {
+            adjudications++;
+            this.adjudicationNanos += adjudicationNanos;
+            maxAdjudicationNanos = Math.max(maxAdjudicationNanos, adjudicationNanos);
+            adjudicationHistogram[bucket(adjudicationNanos)]++;
+        }
+
+        Deque<String> rows = pending.get(job);
+        if (rows == null) {
+            rows = new ArrayDeque<String>();
+            pending.put(job, rows);
+        }
+        if (rows.size() == MAX_PENDING) rows.removeFirst();
+        rows.addLast(System.currentTimeMillis() + "," + sorter.getClass().getName() + "," + role + ","
+                + outcome + "," + wallTime / 1000 + "," + sorter.getMemHits() + ","
+                + (verdict != null ? adjudicationNanos / 1000 : "") + ","
+                + (sorter.getCancelLatency() >= 0 ? sorter.getCancelLatency() / 1000 : ""));
+        return outcome;
+    }
+
+    /**
+     * Appends the attempts recorded without a job since the last call
+     * to a CSV file, writing a header line first if the file is new
+     * @param filename name of the CSV file
+     * @throws IOException if cannot write to file
+     */
+    public void writeCsv(String filename) throws IOException {
+        writeCsv(filename, null);
+    }
+
+    /**
+     * Appends the attempts of one job recorded since the last call to a
+     * CSV file, writing a header line first if the file is new
+     * @param filename name of the CSV file
+     * @param job job whose attempts are written
+     * @throws IOException if cannot write to file
+     */
+    public synchronized void writeCsv(String filename, Object job) throws IOException {
+        Deque<String> rows = pending.remove(job);
+        boolean header = !new File(filename).exists() || new File(filename).length() == 0;
+        PrintWriter writer = null;
+
+        try {
+            writer = new PrintWriter(new FileWriter(filename, true));
+            if (header) {
+                writer.println("time,sorter,role,outcome,wall_us,mem_hits,adjudication_us,cancel_latency_us");
+            }
+            while (rows != null && !rows.isEmpty()) {
+                writer.println(rows.removeFirst());
+            }
+            if (writer.checkError()) throw new IOException("Could not write to file " + filename);
+        } finally {
+            try { writer.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    /**
+     * Drops the attempts of a job that will not be written
+     * @param job job whose attempts are dropped
+     */
+    public synchronized void discard(Object job) {
+        pending.remove(job);
+    }
+
+    private static int bucket(long nanos) {
+        long micros = nanos / 1000;
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    @Override public synchronized long getAttempts() { return attempts; }
+    @Override public synchronized long getAccepted() { return accepted; }
+    @Override public synchronized long getRejected() { return rejected; }
+    @Override public synchronized long getFailed() { return failed; }
+    @Override public synchronized long getTimeouts() { return timeouts; }
+    @Override public synchronized long getMemoryAccesses() { return memoryAccesses; }
+
+    @Override
+    public synchronized double getMeanSortMillis() {
+        return attempts > 0 ? sortNanos / 1e6 / attempts : 0;
+    }
+
+    @Override public synchronized double getMaxSortMillis() { return maxSortNanos / 1e6; }
+
+    @Override
+    public synchronized double getMeanAdjudicationMillis() {
+        return adjudications > 0 ? adjudicationNanos / 1e6 / adjudications : 0;
+    }
+
+    @Override public synchronized double getMaxAdjudicationMillis() { return maxAdjudicationNanos / 1e6; }
+    @Override public synchronized long[] getSortLatencyHistogram() { return sortHistogram.clone(); }
+    @Override public synchronized long[] getAdjudicationLatencyHistogram() { return adjudicationHistogram.clone(); }
+
+    @Override
+    public synchronized void reset() {
+        attempts = accepted = rejected = failed = timeouts = 0;
+        memoryAccesses = sortNanos = maxSortNanos = 0;
+        adjudications = adjudicationNanos = maxAdjudicationNanos = 0;
+        Arrays.fill(sortHistogram, 0);
+        Arrays.fill(adjudicationHistogram, 0);
+        pending.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return this.getClass().getName() + " Object { attempts: " + attempts + ", accepted: " + accepted
+                + ", rejected: " + rejected + ", failed: " + failed + ", timeouts: " + timeouts + " }";
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Management interface of <code>SortMetrics</code>, exported over JMX
+ * as <code>FaultTolerance:type=SortMetrics</code>.  Times are in
+ * milliseconds; histograms count attempts per power of two
+ * microseconds, bucket <code>i</code> holding times below
+ * <code>2^i</code> microseconds.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public interface SortMetricsMBean {
+
+    long getAttempts();
+    long getAccepted();
+    long getRejected();
+    long getFailed();
+    long getTimeouts();
+
+    long getMemoryAccesses();
+    double getMeanSortMillis();
+    double getMaxSortMillis();
+    double getMeanAdjudicationMillis();
+    double getMaxAdjudicationMillis();
+
+    long[] getSortLatencyHistogram();
+    long[] getAdjudicationLatencyHistogram();
+
+    void reset();
+}
@@ -0,0 +1,403 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running service that runs <code>DataSorter</code> jobs in one
+ * JVM, so that many small files do not each pay for JVM startup,
+ * class loading and JIT warmup.  A job is the command line of
+ * <code>DataSorter</code>:
+ *
+ *      inFile outFile primFail backFail timeout [options]
+ *
+ * Jobs are accepted from a directory, from a local socket or both.
+ * In the directory, every file ending in <code>.job</code> holds one
+ * job.  A job file is claimed by renaming it to <code>.running</code>
+ * and, once the job ends, its result is written to a <code>.result</code>
+ * file of the same name and the job file is removed.  Job files should
+ * be created under another name and renamed into place.  On the socket,
+ * bound to the loopback address only, a client sends one job per line
+ * and receives one result line per job, in the order sent.
+ *
+ * Jobs run concurrently on a fixed pool of sorting threads with a
+ * bounded queue.  Job files are left in the directory while the queue
+ * is full, and a socket job that does not fit in the queue is answered
+ * with <code>BUSY</code>.  Result lines give the job's name, its
+ * outcome (<code>OK</code>, <code>FAILED</code>, <code>BUSY</code> or
+ * <code>ERROR</code>) and the milliseconds from queueing to completion.  Waiting on files and sockets is
+ * done on virtual threads where the JVM provides them.
+ * The program can be run from the command line as follows:
+ *
+ *      java SortService [--dir=jobDir] [--port=n] [--threads=n] [--queue=n]
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class SortService implements Closeable {
+
+    private static final String JOB = ".job", RUNNING = ".running", RESULT = ".result";
+
+    private final ThreadPoolExecutor jobs;
+    private final ExecutorService io = SortExecutor.newIoExecutor();
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile boolean running = true;
+    private ServerSocket server;
+    private WatchService watcher;
+
+    /**
+     * Creates a service running up to <code>threads</code> jobs at once
+     * @param threads number of jobs run concurrently
+     * @param queueSize maximum number of jobs waiting to run
+     */
+    public SortService(int threads, int queueSize) {
+        jobs = SortExecutor.newBoundedPool("job", Math.max(1, threads), Math.max(1, queueSize));
+    }
+
+    /**
+     * Queues a job
+     * @param args command line arguments of the job
+     * @return Future completing with true if the job's result was accepted
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    public Future<Boolean> submit(final String[] args) {
+        return jobs.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return new DataSorter().run(new Options(args));
+            }
+        });
+    }
+
+    /**
+     * Queues a job and waits for it to end
+     * @param name name of the job used in its result
+     * @param line command line of the job
+     * @return result line of the job
+     */
+    String runJob(String name, String line) {
+        String[] args = line.trim().split("\\s+");
+        if (new Options(args).size() != 5) return report(name + " ERROR Invalid syntax");
+        long start = System.nanoTime();
+        try {
+            return awaitJob(name, submit(args), start);
+        } catch (RejectedExecutionException ex) {
+            return report(name + " BUSY");
+        }
+    }
+
+    /**
+     * Waits for a queued job to end
+     * @param name name of the job used in its result
+     * @param job Future of the job
+     * @param start System.nanoTime() when the job was queued
+     * @return result line of the job
+     */
+    private String awaitJob(String name, Future<Boolean> job, long start) {
+        try {
+            boolean sorted = job.get();
+            return report(name + (sorted ? " OK " : " FAILED ") + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (ExecutionException ex) {
+            return report(name + " ERROR " + ex.getCause());
+        } catch (InterruptedException ex) {
+            return report(name + " ERROR Interrupted");
+        }
+    }
+
+    private static String report(String result) {
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Starts watching <code>dir</code> for job files
+     * @param dir directory to watch
+     * @throws IOException if the directory cannot be watched
+     */
+    public void watchDirectory(final File dir) throws IOException {
+        if (!dir.isDirectory()) throw new IOException(dir + " is not a directory");
+        watcher = FileSystems.getDefault().newWatchService();
+        dir.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        io.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (running) {
+                        // Rescan on every event and at least once a second, so no job is missed
+                        claimJobs(dir);
+                        WatchKey key = watcher.poll(1, TimeUnit.SECONDS);
+                        if (key != null) {
+                            key.pollEvents();
+                            key.reset();
+                        }
+                    }
+                } catch (Exception ex) {
+                    if (running) System.out.println("Stopped watching " + dir + ": " + ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Claims the job files in <code>dir</code> while the job queue has room
+     */
+    private void claimJobs(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (!file.getName().endsWith(JOB)) continue;
+            if (jobs.getQueue().remainingCapacity() == 0) return;
+
+            String base = file.getPath().substring(0, file.getPath().length() - JOB.length());
+            final File claimed = new File(base + RUNNING);
+            final File result = new File(base + RESULT);
+            final String name = file.getName().substring(0, file.getName().length() - JOB.length());
+            if (!file.renameTo(claimed)) continue;
+
+            // Socket clients queue jobs too, so the capacity check above is only a hint
+            String line;
+            try {
+                line = readJob(claimed);
+            } catch (IOException ex) {
+                line = "";
+            }
+            String[] args = line.trim().split("\\s+");
+            if (new Options(args).size() != 5) {
+                writeResult(result, report(name + " ERROR Invalid syntax"));
+                claimed.delete();
+                continue;
+            }
+            final long start = System.nanoTime();
+            final Future<Boolean> job;
+            try {
+                job = submit(args);
+            } catch (RejectedExecutionException ex) {
+                // The queue filled since the check; hand the job back for a later scan
+                if (!claimed.renameTo(file)) {
+                    writeResult(result, report(name + " BUSY"));
+                    claimed.delete();
+                }
+                return;
+            }
+            io.submit(new Runnable() {
+                @Override
+                public void run() {
+                    writeResult(result, awaitJob(name, job, start));
+                    claimed.delete();
+                }
+            });
+        }
+    }
+
+    private static String readJob(File file) throws IOException {
+        BufferedReader reader = null;
+
+        try {
+            reader = new BufferedReader(new FileReader(file));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) return line;
+            }
+            return "";
+        } finally {
+            try { reader.close(); } catch (NullPointerException ex) {}
+        }
+    }
+
+    private static void writeResult(File file, String result) {
+        File temp = new File(file.getPath() + ".tmp");
+        PrintWriter writer = null;
+
+        try {
+            writer = new PrintWriter(new FileWriter(temp));
+            writer.println(result);
+        } catch (IOException ex) {
+            System.out.println("Could not write to file " + file);
+        } finally {
+            try { writer.close(); } catch (NullPointerException ex) {}
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            System.out.println("Could not write to file " + file);
+        }
+    }
+
+    /**
+     * Starts accepting jobs on a socket bound to the loopback address
+     * @param port port to listen on, 0 for any free port
+     * @return port listened on
+     * @throws IOException if the socket cannot be opened
+     */
+    public int listen(int port) throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        io.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (running) {
+                        final Socket socket = server.accept();
+                        io.submit(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                    }
+                } catch (IOException ex) {
+                    if (running) System.out.println("Stopped listening: " + ex.getMessage());
+                }
+            }
+        });
+        return server.getLocalPort();
+    }
+
+    /**
+     * Runs the jobs sent on one connection concurrently and writes
+     * their results back in the order the jobs were sent
+     */
+    private void serve(final Socket socket) {
+        final BlockingQueue<Future<String>> results = new LinkedBlockingQueue<Future<String>>();
+        final Future<String> end = new FutureTask<String>(new Callable<String>() {
+            @Override
+            public String call() { return null; }
+        });
+        Future<?> writer = null;
+
+        try {
+            final PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+            writer = io.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Future<String> result;
+                        while ((result = results.take()) != end) {
+                            out.println(result.get());
+                        }
+                    } catch (InterruptedException ex) {
+                    } catch (ExecutionException ex) {
+                        out.println("ERROR " + ex.getCause());
+                    }
+                }
+            });
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            String line;
+            int count = 0;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                final String name = "job-" + (++count);
+                final String job = line;
+                results.add(io.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return runJob(name, job);
+                    }
+                }));
+            }
+        } catch (IOException ex) {
+            System.out.println("Connection failed: " + ex.getMessage());
+        } finally {
+            results.add(end);
+            try {
+                if (writer != null) writer.get();
+            } catch (Exception ex) {}
+            try { socket.close(); } catch (IOException ex) {}
+        }
+    }
+
+    /**
+     * Blocks until the service is closed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    /**
+     * Stops accepting jobs.  Jobs already queued are left to finish.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try { server.close(); } catch (NullPointerException | IOException ex) {}
+        try { watcher.close(); } catch (NullPointerException | IOException ex) {}
+        jobs.shutdown();
+        io.shutdown();
+        closed.countDown();
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options(args);
+        if (!options.has("dir") && !options.has("port")) {
+            printSyntax();
+            return;
+        }
+
+        final SortService service = new SortService(
+                options.getInt("threads", Runtime.getRuntime().availableProcessors()), options.getInt("queue", 1000));
+        try {
+            if (options.has("dir")) {
+                service.watchDirectory(new File(options.getString("dir", ".")));
+            }
+            if (options.has("port")) {
+                System.out.println("Listening on port " + service.listen(options.getInt("port", 0)));
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    service.close();
+                }
+            });
+            service.awaitClose();
+        } catch (IOException ex) {
+            System.out.println("Could not start service: " + ex.getMessage());
+            service.close();
+        } catch (InterruptedException ex) {
+            service.close();
+        }
+    }
+
+    /**
+     * Prints the proper syntax for running SortService
+     */
+    private static void printSyntax() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SortService runs DataSorter jobs without starting a JVM per job.\n\n")
+                .append("\tjava SortService [--dir=<jobDir>] [--port=<n>] [--threads=<n>] [--queue=<n>]\n\n")
+                .append("Where:\n\n")
+                .append("\tjobDir = directory watched for *.job files, each holding one DataSorter\n")
+                .append("\t         command line; results are written to *.result files\n")
+                .append("\tport = local port accepting one DataSorter command line per line\n")
+                .append("\tthreads = number of jobs run at once (default number of processors)\n")
+                .append("\tqueue = number of jobs that may wait to run (default 1000)\n");
+        System.out.println(sb.toString());
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Object { running: " + running
+                + ", active jobs: " + jobs.getActiveCount() + ", queued jobs: " + jobs.getQueue().size() + " }";
+    }
+}
@@ -1,3 +1,6 @@
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 /**
  * Class that uses various methods to evaluate whether or not
  * one Array is a sorted version of another.
@@ -6,6 +9,10 @@
 */
 public class SortedCheck {
 
+    private static final int HISTOGRAM_LIMIT = 1 << 22;            // Largest value range counted exactly
+    private static final int PARALLEL_SLICE = 1 << 16;             // Smallest slice checked by one thread
+    private static final long HASH_SEED = 0x632BE59BD9B4E019L;     // Seed of the second hash
+
     /**
      * Determines whether or not <code>sorted</code> is a sorted
      * version of <code>original</code> based on size, sum, and
@@ -28,6 +35,264 @@ public class SortedCheck {
         return checkMonotonic(sorted, increasing);
     }
 
+    /**
+     * Primitive version of <code>checkSorted</code>.  Determines whether
+     * or not <code>sorted</code> is a sorted version of <code>original</code>
+     * based on size, monotonicity of <code>sorted</code> and equality of
+     * the two multisets of values, in one pass over each array.
+     *
+     * When the values span a small range (such as the 0-999 values of
+     * <code>DataGenerator</code>) the multisets are compared exactly with
+     * a counting histogram.  Otherwise they are compared by two
+     * independent sums of mixed 64 bit hashes of the values.
+     * @param original Array of int values before sorted
+     * @param sorted Array of int values potentially sorted
+     * @param increasing true if values sorted in increasing order,
+     *                   false otherwise
+     * @return true if <code>sorted</code> can be considered the
+     *          sorted version of <code>original</code> based on
+     *          mentioned conditions.
+     */
+    public static Boolean checkSorted(final int[] original, final int[] sorted, Boolean increasing) {
+        return checkSorted(original, sorted, increasing, 1);
+    }
+
+    /**
+     * Version of <code>checkSorted</code> that splits both arrays across
+     * up to <code>parallelism</code> threads.  Each thread checks the
+     * order of its slice of <code>sorted</code>, including the boundary
+     * with the previous slice, and builds a partial histogram or partial
+     * hash sums, which are then combined.  Partial histograms are only
+     * used while all of them together are no larger than the input;
+     * beyond that the slices count into one shared histogram, so the
+     * memory and combining cost of the check do not grow with the
+     * number of threads.
+     * @param original Array of int values before sorted
+     * @param sorted Array of int values potentially sorted
+     * @param increasing true if values sorted in increasing order,
+     *                   false otherwise
+     * @param parallelism Maximum number of threads to use
+     * @return true if <code>sorted</code> can be considered the
+     *          sorted version of <code>original</code>
+     */
+    public static Boolean checkSorted(final int[] original, final int[] sorted, Boolean increasing, int parallelism) {
+        if (sorted == null || increasing == null) return false;
+        if (original == null) return checkMonotonic(sorted, increasing);
+        if (sorted.length != original.length || sorted.length == 0) return false;
+
+        // If sorted is monotonic its ends bound every value, so the range is known up front
+        int lo = increasing ? sorted[0] : sorted[sorted.length-1];
+        int hi = increasing ? sorted[sorted.length-1] : sorted[0];
+        if (lo > hi) return false;
+        long range = (long)hi - lo + 1;
+        boolean histogram = range <= HISTOGRAM_LIMIT && range <= 4L*sorted.length + 1024;
+
+        int slices = Math.min(Math.max(1, parallelism), sorted.length / PARALLEL_SLICE + 1);
+        AtomicIntegerArray shared = (histogram && slices > 1 && (long)slices * range > sorted.length)
+                ? new AtomicIntegerArray((int)range) : null;
+        Partial result;
+        if (slices <= 1) {
+            result = new Partial(original, sorted, increasing, histogram, shared, lo, (int)range, 0, sorted.length);
+        } else {
+            result = SortExecutor.forkJoinPool(slices).invoke(
+                    new CheckTask(original, sorted, increasing, histogram, shared, lo, (int)range, 0, sorted.length,
+                            (sorted.length + slices - 1) / slices));
+        }
+        return result.accepts();
+    }
+
+    /**
+     * Determines whether or not <code>sorted</code> is a sorted version
+     * of a multiset of values known only by its size and
+     * <code>multisetHash</code>, such as the values described by a
+     * binary file header.  The original values are never rescanned.
+     * @param count Number of values before sorting
+     * @param hash <code>multisetHash</code> of values before sorting
+     * @param sorted Array of int values potentially sorted
+     * @param increasing true if values sorted in increasing order,
+     *                   false otherwise
+     * @return true if <code>sorted</code> can be considered the
+     *          sorted version of the described values
+     */
+    public static Boolean checkSorted(long count, long hash, final int[] sorted, Boolean increasing) {
+        if (sorted == null || increasing == null) return false;
+
+        return sorted.length == count && checkMonotonic(sorted, increasing) && multisetHash(sorted) == hash;
+    }
+
+    /**
+     * Version of <code>checkSorted</code> for the values of an
+     * <code>OffHeapStore</code>, known before sorting only by their
+     * count and <code>multisetHash</code>.  The store is split into
+     * slices across up to <code>parallelism</code> threads, and each
+     * thread checks the ascending order of its slice, including the
+     * boundary with the previous slice, and sums the hash of its slice.
+     * @param count Number of values before sorting
+     * @param hash <code>multisetHash</code> of values before sorting
+     * @param sorted Store of values potentially sorted in increasing order
+     * @param parallelism Maximum number of threads to use
+     * @return true if <code>sorted</code> can be considered the
+     *          sorted version of the described values
+     */
+    public static Boolean checkSorted(long count, long hash, final OffHeapStore sorted, int parallelism) {
+        if (sorted == null || sorted.size() != count) return false;
+
+        StorePartial result = checkStore(sorted, true, null, parallelism);
+        return result.ordered && result.hash == hash;
+    }
+
+    /**
+     * Determines whether or not <code>sorted</code> holds the packed
+     * entries of all records of <code>records</code> in increasing order
+     * of key.  Only the keys of the entries are compared, so records of
+     * equal key may be in any order, and the multiset of entries is
+     * checked by hashing the whole record each entry names, together
+     * with the key of the entry, against the hash of the original
+     * records.  Split across up to <code>parallelism</code> threads as
+     * for other stores.
+     * @param records Records that were sorted
+     * @param sorted Store of packed entries potentially sorted by key
+     * @param parallelism Maximum number of threads to use
+     * @return true if <code>sorted</code> can be considered the
+     *          records sorted by key
+     */
+    public static Boolean checkRecords(final RecordFile records, final OffHeapStore sorted, int parallelism) {
+        if (records == null || sorted == null || sorted.size() != records.size()) return false;
+
+        StorePartial result = checkStore(sorted, true, records, parallelism);
+        return result.ordered && result.hash == records.getHash();
+    }
+
+    /**
+     * Determines whether or not <code>selected</code> holds the values
+     * at the given ranks of the ascending order of <code>original</code>,
+     * without sorting <code>original</code>.  The selected values must be
+     * in ascending order, and for each selected value s at rank r, fewer
+     * than r + 1 original values may be below s and more than r may be at
+     * most s, which holds for the value at rank r and no other.  The
+     * counts for all selected values are taken in one pass over
+     * <code>original</code>, placing each value among the selected values
+     * by binary search, and most values of a top-k selection fall
+     * outside the selected range and are placed by one comparison.
+     * @param original Array of int values selected from
+     * @param ranks Ascending distinct ranks that were selected
+     * @param selected Array of int values potentially at those ranks
+     * @return true if <code>selected</code> can be considered the values
+     *          at <code>ranks</code> of the sorted <code>original</code>
+     */
+    public static Boolean checkSelection(final int[] original, final int[] ranks, final int[] selected) {
+        if (original == null || ranks == null || selected == null) return false;
+        int m = selected.length;
+        if (ranks.length != m) return false;
+        for (int i = 1; i < m; i++) {
+            if (selected[i] < selected[i-1] || ranks[i] <= ranks[i-1]) return false;
+        }
+        if (m == 0) return true;
+        if (ranks[0] < 0 || ranks[m-1] >= original.length) return false;
+
+        // Per value, count it at the first selected value above it and the first not below it
+        int[] below = new int[m + 1];
+        int[] notAbove = new int[m + 1];
+        int first = selected[0], last = selected[m-1];
+        for (int value : original) {
+            if (value < first) {
+                below[0]++;
+                notAbove[0]++;
+            } else if (value <= last) {
+                int atLeast = lowerBound(selected, value);
+                notAbove[atLeast]++;
+                below[atLeast == m || selected[atLeast] > value ? atLeast : upperBound(selected, atLeast, value)]++;
+            }
+        }
+
+        // Prefix sums give, for each selected value, the original values below and not above it
+        int belowCount = 0, notAboveCount = 0;
+        for (int i = 0; i < m; i++) {
+            belowCount += below[i];
+            notAboveCount += notAbove[i];
+            if (belowCount > ranks[i] || notAboveCount <= ranks[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first index of <code>sorted</code> holding a value
+     * not less than <code>key</code>
+     */
+    private static int lowerBound(final int[] sorted, int key) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the first index of <code>sorted</code> from
+     * <code>from</code> holding a value greater than <code>key</code>
+     */
+    private static int upperBound(final int[] sorted, int from, int key) {
+        int lo = from, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Order independent hash of a multiset of values.  Each value is
+     * mixed into 64 bits and the mixed values are summed, so equal
+     * multisets hash equally regardless of order.
+     * @param values Values to hash
+     * @return the multiset hash of <code>values</code>
+     */
+    public static long multisetHash(final int[] values) {
+        return multisetHash(values, 0, values.length);
+    }
+
+    /**
+     * Multiset hash of the values <code>values[from, to)</code>
+     * @param values Array holding the values to hash
+     * @param from Index of first value to hash
+     * @param to Index after last value to hash
+     * @return the multiset hash of the range
+     */
+    public static long multisetHash(final int[] values, int from, int to) {
+        long hash = 0;
+        for (int i = from; i < to; i++) {
+            hash += mix(values[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Multiset hash of the values of an <code>OffHeapStore</code>,
+     * summed across up to <code>parallelism</code> threads.  Int values
+     * hash as they do in an array.
+     * @param values Store holding the values to hash
+     * @param parallelism Maximum number of threads to use
+     * @return the multiset hash of the store
+     */
+    public static long multisetHash(final OffHeapStore values, int parallelism) {
+        return checkStore(values, false, null, parallelism).hash;
+    }
+
+    /**
+     * Mixes a single value into 64 bits (SplitMix64 finalizer)
+     * @param value Value to mix
+     * @return mixed 64 bit value
+     */
+    public static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Evaluates the passed in array for monotonicity assuming
      * the Objects in the array are comparable
@@ -55,27 +320,238 @@ public class SortedCheck {
         return true;
     }
 
+    /**
+     * Evaluates the passed in primitive array for monotonicity
+     * @param sorted Array of potentially sorted values
+     * @param increasing set to true if checking for increasing order,
+     *                   false for decreasing order
+     * @return true if monotonic, false otherwise
+     */
+    private static boolean checkMonotonic(final int[] sorted, boolean increasing) {
+        if (sorted.length <= 0) return false;
+
+        if (increasing) {
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i] < sorted[i-1]) {
+                    return false;
+                }
+            }
+        } else {
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i] > sorted[i-1]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Evaluates equality of passed in arrays based on the sums
-     * of their values' String representations
+     * of their values.  Numbers are summed directly, any other
+     * value through a mix of its hash code, so any Comparable whose
+     * equal values hash equally can be checked.
      * @param original First array of objects to use in comparison
      * @param sorted Second array of objects to use in comparison
      * @return true if equal based on above conditions, false otherwise
      */
     private static boolean checkSum(Object[] original, Object[] sorted) {
-        int sum1 = 0;
+        long sum1 = 0;
         for (Object o : original) {
-            sum1 += Integer.parseInt(o.toString());
+            sum1 += (o instanceof Number) ? ((Number)o).longValue() : mix(o.hashCode());
         }
 
-        int sum2 = 0;
+        long sum2 = 0;
         for (Object o : sorted) {
-            sum2 += Integer.parseInt(o.toString());
+            sum2 += (o instanceof Number) ? ((Number)o).longValue() : mix(o.hashCode());
         }
 
         return sum1 == sum2;
     }
 
+    /**
+     * Partial result of a primitive check over one slice of both arrays
+     */
+    private static class Partial {
+        boolean ordered = true;     // Slice of sorted is monotonic and within range
+        int[] counts;               // Original counts minus sorted counts, by value - lo
+        AtomicIntegerArray shared;  // Histogram shared by all slices, in place of counts
+        long hash1, hash2;          // Original hash sums minus sorted hash sums
+
+        Partial(int[] original, int[] sorted, boolean increasing, boolean histogram, AtomicIntegerArray shared,
+                int lo, int range, int from, int to) {
+            this.shared = shared;
+            if (histogram) {
+                if (shared == null) counts = new int[range];
+                for (int i = from; i < to; i++) {
+                    long index = (long)original[i] - lo;
+                    if (index < 0 || index >= range) { ordered = false; return; }
+                    if (shared != null) shared.getAndIncrement((int)index);
+                    else counts[(int)index]++;
+                }
+            } else {
+                for (int i = from; i < to; i++) {
+                    hash1 += mix(original[i]);
+                    hash2 += mix(original[i] ^ HASH_SEED);
+                }
+            }
+
+            int previous = (from > 0) ? sorted[from-1] : sorted[from];
+            for (int i = from; i < to; i++) {
+                int value = sorted[i];
+                if (increasing ? value < previous : value > previous) { ordered = false; return; }
+                previous = value;
+                if (histogram) {
+                    long index = (long)value - lo;
+                    if (index < 0 || index >= range) { ordered = false; return; }
+                    if (shared != null) shared.getAndDecrement((int)index);
+                    else counts[(int)index]--;
+                } else {
+                    hash1 -= mix(value);
+                    hash2 -= mix(value ^ HASH_SEED);
+                }
+            }
+        }
+
+        Partial combine(Partial other) {
+            ordered &= other.ordered;
+            if (ordered && counts != null) {
+                for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+            }
+            hash1 += other.hash1;
+            hash2 += other.hash2;
+            return this;
+        }
+
+        boolean accepts() {
+            if (!ordered) return false;
+            if (shared != null) {
+                for (int i = 0; i < shared.length(); i++) {
+                    if (shared.get(i) != 0) return false;
+                }
+                return true;
+            }
+            if (counts != null) {
+                for (int count : counts) {
+                    if (count != 0) return false;
+                }
+                return true;
+            }
+            return hash1 == 0 && hash2 == 0;
+        }
+    }
+
+    /**
+     * Task checking one range of both arrays, split in halves down
+     * to slices of <code>slice</code> elements
+     */
+    private static class CheckTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] original, sorted;
+        private final boolean increasing, histogram;
+        private final AtomicIntegerArray shared;
+        private final int lo, range, from, to, slice;
+
+        CheckTask(int[] original, int[] sorted, boolean increasing, boolean histogram, AtomicIntegerArray shared,
+                  int lo, int range, int from, int to, int slice) {
+            this.original = original; this.sorted = sorted;
+            this.increasing = increasing; this.histogram = histogram; this.shared = shared;
+            this.lo = lo; this.range = range;
+            this.from = from; this.to = to; this.slice = slice;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= slice) {
+                return new Partial(original, sorted, increasing, histogram, shared, lo, range, from, to);
+            }
+            int mid = from + (to - from) / 2;
+            CheckTask left = new CheckTask(original, sorted, increasing, histogram, shared, lo, range, from, mid, slice);
+            CheckTask right = new CheckTask(original, sorted, increasing, histogram, shared, lo, range, mid, to, slice);
+            left.fork();
+            Partial result = right.compute();
+            return left.join().combine(result);
+        }
+    }
+
+    /**
+     * Hashes a store and, if <code>ordered</code> is set, checks that
+     * it is in increasing order, split across up to
+     * <code>parallelism</code> threads.  If <code>records</code> is
+     * given the store holds packed record entries, which are ordered
+     * by key and hashed by the records they name.
+     */
+    private static StorePartial checkStore(OffHeapStore store, boolean ordered, RecordFile records,
+                                           int parallelism) {
+        long n = store.size();
+        int slices = (int)Math.min(Math.max(1, parallelism), n / PARALLEL_SLICE + 1);
+        if (slices <= 1) return new StorePartial(store, ordered, records, 0, n);
+        return SortExecutor.forkJoinPool(slices).invoke(
+                new StoreCheckTask(store, ordered, records, 0, n, (n + slices - 1) / slices));
+    }
+
+    /**
+     * Partial result of a check over one slice of a store
+     */
+    private static class StorePartial {
+        boolean ordered = true;     // Slice is in increasing order
+        long hash;                  // Multiset hash of the slice
+
+        StorePartial(OffHeapStore store, boolean checkOrder, RecordFile records, long from, long to) {
+            int shift = (records != null) ? 32 : 0;                 // Records are ordered by key alone
+            long previous = (from > 0) ? store.get(from-1) >> shift : Long.MIN_VALUE;
+            for (long i = from; i < to; i++) {
+                long value = store.get(i);
+                if (checkOrder && value >> shift < previous) { ordered = false; return; }
+                previous = value >> shift;
+                if (records == null) {
+                    hash += mix(value);
+                } else {
+                    if (!records.contains(value)) { ordered = false; return; }
+                    hash += records.hash(value);
+                }
+            }
+        }
+
+        StorePartial combine(StorePartial other) {
+            ordered &= other.ordered;
+            hash += other.hash;
+            return this;
+        }
+    }
+
+    /**
+     * Task checking one range of a store, split in halves down to
+     * slices of <code>slice</code> values
+     */
+    private static class StoreCheckTask extends RecursiveTask<StorePartial> {
+        private static final long serialVersionUID = 1L;
+
+        private final OffHeapStore store;
+        private final boolean checkOrder;
+        private final RecordFile records;
+        private final long from, to, slice;
+
+        StoreCheckTask(OffHeapStore store, boolean checkOrder, RecordFile records, long from, long to, long slice) {
+            this.store = store; this.checkOrder = checkOrder; this.records = records;
+            this.from = from; this.to = to; this.slice = slice;
+        }
+
+        @Override
+        protected StorePartial compute() {
+            if (to - from <= slice) {
+                return new StorePartial(store, checkOrder, records, from, to);
+            }
+            long mid = from + (to - from) / 2;
+            StoreCheckTask left = new StoreCheckTask(store, checkOrder, records, from, mid, slice);
+            StoreCheckTask right = new StoreCheckTask(store, checkOrder, records, mid, to, slice);
+            left.fork();
+            StorePartial result = right.compute();
+            return left.join().combine(result);
+        }
+    }
+
     @Override
     public String toString() {
         return this.getClass().getName() + " Class Object";
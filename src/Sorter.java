@@ -1,17 +1,28 @@
+import java.util.SplittableRandom;
+
 /**
- * An implementation of Thread that is used for
- * sorting algorithms
+ * An implementation of Runnable that is used for
+ * sorting algorithms.  Sorters are run as tasks on the shared
+ * executor of <code>SortExecutor</code> and are stopped
+ * cooperatively: <code>cancel</code> raises a flag that the hot
+ * loops of every sorter poll through <code>checkCancelled</code>.
  *
  * @author Tanner Rutgers (trutgers)
  */
-public abstract class Sorter extends Thread{
+public abstract class Sorter implements Runnable {
 
     protected Integer[] sortedValues;               // Potentially sorted values
     protected Boolean ascendingOrder = true;        // Ascending order flag
     protected Double failureProbability;            // Probability of memory access failure
+    private SplittableRandom random;                // Source of virtual failures, null for Math.random
 
     protected Boolean sortComplete = false;         // Sort completed flag
-    protected int memHits = 0;                      // Number of memory accesses
+    protected long memHits = 0;                     // Number of memory accesses
+
+    private volatile boolean cancelled = false;     // Cooperative cancellation flag
+    private volatile long cancelRequested;          // System.nanoTime() of cancel request
+    private long cancelLatency = -1;                // Nanoseconds from cancel request to stop
+    private long wallTime = -1;                     // Nanoseconds spent in run()
 
     public Integer[] getSortedValues() { return sortedValues; }
     public Boolean didFinish() { return sortComplete; }
@@ -19,18 +30,57 @@ public abstract class Sorter extends Thread{
     public void setValues(Integer[] values) { this.sortedValues = values.clone(); }
     public void setAscendingOrder(Boolean asc) { this.ascendingOrder = asc; }
     public void setFailureProbability(Double prob) { this.failureProbability = prob; }
+    public void setRandom(SplittableRandom random) { this.random = random; }
+
+    public boolean isCancelled() { return cancelled; }
+    public long getCancelLatency() { return cancelLatency; }
+    public long getMemHits() { return memHits; }
+    public long getWallTime() { return wallTime; }
 
     /**
-     * Called by Thread.start()
+     * Requests that the sort stop.  The sorter stops the next time
+     * one of its loops calls <code>checkCancelled</code>.
+     */
+    public void cancel() {
+        if (!cancelled) {
+            cancelRequested = System.nanoTime();
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Called by the executor running this sorter.
      * Will call concrete implementation's sort method
      */
     @Override
     public void run() {
+        long start = System.nanoTime();
         try {
-            this.sort();
-        } catch (ThreadDeath td) {
-            System.out.println("Timeout occured");
-            throw new ThreadDeath();
+            doSort();
+        } catch (SortCancelledException ex) {
+            cancelLatency = System.nanoTime() - cancelRequested;
+            System.out.println("Timeout occured (stopped " + (cancelLatency / 1000) + " us after cancel)");
+        } finally {
+            wallTime = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Calls the sort method appropriate for the values this sorter holds
+     */
+    protected void doSort() {
+        this.sort();
+    }
+
+    /**
+     * Polled by the loops of concrete sorters.  Stops the sort by
+     * throwing <code>SortCancelledException</code> if the sort has been
+     * cancelled or the running thread interrupted.
+     */
+    protected final void checkCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            if (!cancelled) cancel();
+            throw new SortCancelledException();
         }
     }
 
@@ -38,14 +88,16 @@ public abstract class Sorter extends Thread{
      * Determines whether or not a virtual hardware failure occurred.
      * This is a theoretical calculation based on
      * <code>failureProbability</code> and the number of memory
-     * accesses during the sorting routines execution.
+     * accesses during the sorting routines execution.  Draws from the
+     * sorter's own generator if one was set with <code>setRandom</code>,
+     * so seeded runs are reproducible.
      * @return true if failure occured, false otherwise
      */
     protected Boolean virtualHardwareFailure() {
         if (failureProbability == null) return false;
 
         double hazard = memHits*failureProbability;
-        double random = Math.random();
+        double random = (this.random != null) ? this.random.nextDouble() : Math.random();
         if (random >= 0.5 && random <= 0.5+hazard) return true;
         return false;
     }
@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+/**
+ * Chooses the sorters of a recovery block from the shape of the
+ * input.  The exact minimum and maximum are found in one pass, and
+ * the number of distinct values and the presortedness are estimated
+ * from an evenly spaced sample of the input.
+ *
+ * Bounded inputs are counting sorted and other inputs of any size
+ * are radix sorted, except inputs that are already in ascending order
+ * with many distinct values, which <code>AdaptiveMergeSort</code>
+ * finds as a few long runs and sorts in near-linear time.  Small
+ * inputs are heap sorted.  The alternates are the best sorters of a
+ * different design, so a fault in the primary is unlikely to repeat.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class SorterSelector {
+
+    private static final int SAMPLE_SIZE = 1024;                // Positions sampled
+    private static final int SMALL_INPUT = 1024;                // Inputs heap sorted
+    private static final double PRESORTED = 0.99;               // Ascending pair fraction of sorted inputs
+    private static final double DISTINCT = 0.5;                 // Distinct sample fraction of high cardinality
+
+    private final int count;
+    private final int min, max;
+    private final int sampled, distinct;
+    private final double presortedness;
+    private final String primary;
+    private final String[] backups;
+
+    private SorterSelector(int[] values) {
+        count = values.length;
+
+        int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+        for (int value : values) {
+            if (value < lo) lo = value;
+            if (value > hi) hi = value;
+        }
+        min = lo;
+        max = hi;
+
+        // Sample values and the pairs that start at them
+        int samples = Math.min(SAMPLE_SIZE, Math.max(0, count - 1));
+        int[] sample = new int[samples];
+        int ascending = 0;
+        long stride = samples > 0 ? (count - 1) / samples : 0;
+        for (int s = 0; s < samples; s++) {
+            int i = (int)(s * stride);
+            sample[s] = values[i];
+            if (values[i] <= values[i + 1]) ascending++;
+        }
+        Arrays.sort(sample);
+        int unique = samples > 0 ? 1 : 0;
+        for (int s = 1; s < samples; s++) {
+            if (sample[s] != sample[s - 1]) unique++;
+        }
+        sampled = samples;
+        distinct = unique;
+        presortedness = samples > 0 ? (double)ascending / samples : 1;
+
+        // Choose the primary, then the best alternates of other designs
+        long range = count > 0 ? (long)max - min + 1 : 0;
+        boolean bounded = range <= CountingSort.MAX_RANGE && range <= 2L*count + 1024;
+        boolean sorted = presortedness >= PRESORTED && distinct >= DISTINCT*sampled;
+
+        if (count < SMALL_INPUT) {
+            primary = "DaryHeapSort";
+            backups = new String[] { "RadixSort", "ParallelMergeSort" };
+        } else if (bounded) {
+            primary = "CountingSort";
+            backups = new String[] { "RadixSort", "DaryHeapSort" };
+        } else if (sorted) {
+            primary = "AdaptiveMergeSort";
+            backups = new String[] { "RadixSort", "DaryHeapSort" };
+        } else {
+            primary = "RadixSort";
+            backups = new String[] { "ParallelMergeSort", "DaryHeapSort" };
+        }
+    }
+
+    /**
+     * Inspects <code>values</code> and chooses sorters for them
+     * @param values values to be sorted
+     * @return the selection
+     */
+    public static SorterSelector select(int[] values) {
+        return new SorterSelector(values);
+    }
+
+    public int getMin() { return min; }
+    public int getMax() { return max; }
+    public double getPresortedness() { return presortedness; }
+    public String getPrimary() { return primary; }
+    public String[] getBackups() { return backups.clone(); }
+
+    /**
+     * Returns the number of distinct values among the sampled values,
+     * a lower bound on the number of distinct values of the input
+     * @return distinct sampled values
+     */
+    public int getSampleDistinct() { return distinct; }
+    public int getSampleSize() { return sampled; }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Object { values: " + count + ", range: [" + min + ", " + max
+                + "], distinct: " + distinct + "/" + sampled + " sampled, presortedness: " + presortedness
+                + ", primary: " + primary + ", backups: " + Arrays.toString(backups) + " }";
+    }
+}
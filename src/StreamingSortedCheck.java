@@ -0,0 +1,79 @@
+/**
+ * Acceptance test for sorted output that is produced as a stream
+ * and may never be held in memory at once.  The original values are
+ * summarised by their count and <code>SortedCheck.multisetHash</code>
+ * as they are read, and every output value is checked for order and
+ * folded into its own count and hash as it is written.
+ *
+ * @author Tanner Rutgers (trutgers)
+ */
+public class StreamingSortedCheck {
+
+    private final boolean increasing;
+
+    private long originalCount;
+    private long originalHash;
+
+    private long sortedCount;
+    private long sortedHash;
+    private int last;
+    private boolean monotonic = true;
+
+    public StreamingSortedCheck(boolean increasing) {
+        this.increasing = increasing;
+    }
+
+    /**
+     * Records original values before sorting
+     * @param values Array holding original values
+     * @param offset Index of first value to record
+     * @param length Number of values to record
+     */
+    public void addOriginal(int[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            originalHash += SortedCheck.mix(values[i]);
+        }
+        originalCount += length;
+    }
+
+    /**
+     * Records an original multiset known only by its count and hash,
+     * such as the one described by a binary file header
+     */
+    public void addOriginal(long count, long hash) {
+        originalCount += count;
+        originalHash += hash;
+    }
+
+    /**
+     * Records the next value of the sorted output
+     * @param value Next output value
+     */
+    public void addSorted(int value) {
+        if (sortedCount > 0 && (increasing ? value < last : value > last)) {
+            monotonic = false;
+        }
+        last = value;
+        sortedCount++;
+        sortedHash += SortedCheck.mix(value);
+    }
+
+    public boolean isMonotonic() { return monotonic; }
+    public long getOriginalCount() { return originalCount; }
+    public long getOriginalHash() { return originalHash; }
+
+    /**
+     * Determines whether the output recorded so far is a sorted
+     * version of the original values recorded so far
+     * @return true if accepted, false otherwise
+     */
+    public boolean isAccepted() {
+        return monotonic && sortedCount > 0 && sortedCount == originalCount && sortedHash == originalHash;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + " Object { original: " + originalCount
+                + ", sorted: " + sortedCount + ", monotonic: " + monotonic + " }";
+    }
+}
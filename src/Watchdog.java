@@ -1,5 +1,3 @@
-import java.util.TimerTask;
-
 /*
  * Created on Aug 6, 2004
  * src.Watchdog timer
@@ -9,13 +7,16 @@ import java.util.TimerTask;
 /**
  * @author dick
  *
- 
+ * Scheduled by <code>SortExecutor.watch</code> to run once the
+ * timeout of a sorting attempt has passed.  Cancels the watched
+ * sorter cooperatively; the sorter stops the next time it polls
+ * its cancel flag.
  */
-public class Watchdog extends TimerTask {
+public class Watchdog implements Runnable {
 
-Thread watched;
+Sorter watched;
 
-	public Watchdog(Thread target){
+	public Watchdog(Sorter target){
 		// Constructor sets the class variable 'watched'
 		watched = target;
 	}
@@ -24,7 +25,7 @@ Thread watched;
 	 */
 	public void run() {
 
-        watched.stop();
+        watched.cancel();
 	}
 
 }